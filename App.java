@@ -1,9 +1,19 @@
 package track;
-import java.util.Scanner;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
 
 public class App {
-  
+  private static final List<String> ENGINES = Arrays.asList("jindori", "cloud", "accounts", "encode");
+  private static final String USAGE = "Usage: java track.App [--engine jindori|cloud|accounts|encode] [--threads N]"
+      + " [--max-points N] [--max-roads N] [--off-heap] [--file PATH [--binary]] [--output PATH] [--metrics] [--telemetry]";
+
   public static void main(String[] args) {
     // このコードは標準入力と標準出力を用いたサンプルコードです。
     // このコードは好きなように編集・削除してもらって構いません。
@@ -11,19 +21,147 @@ public class App {
     // This is a sample code to use stdin and stdout.
     // Edit and remove this code as you like.
 
-    String[] lines = new JinDori(getStdin()).outputLines();
-    for (int i = 0, l = lines.length; i < l; i++) {
-      String output = String.format("%s", lines[i]);
-      System.out.println(output);
+    // Options:
+    //   --engine jindori|cloud|accounts|encode (jindori by default, accounts bills requests prefixed with an account id,
+    //     encode converts cloud requests to the binary request format)
+    //   --threads N (number of threads updating the colors or billing the accounts, 1 by default)
+    //   --max-points N, --max-roads N (limits of the JinDori input)
+    //   --off-heap (keep the JinDori roads and colors outside of the Java heap)
+    //   --file PATH (memory map the input file instead of reading stdin)
+    //   --binary (the --file of the cloud engine holds requests of the binary request format)
+    //   --output PATH (write the output file instead of stdout)
+    //   --metrics (measure the billed requests, registered to JMX and reported to stderr at the end)
+    //   --telemetry (emit the JinDori build and per time telemetry as JFR events, e.g. with -XX:StartFlightRecording)
+    String engine = "jindori";
+    String file = null;
+    String outputFile = null;
+    boolean offHeap = false;
+    boolean binary = false;
+    boolean measured = false;
+    boolean telemetry = false;
+    int threads = 1;
+    int maxPoints = JinDori.DEFAULT_MAX_POINTS;
+    int maxRoads = JinDori.DEFAULT_MAX_ROADS;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--off-heap")) {
+        offHeap = true;
+      } else if (args[i].equals("--binary")) {
+        binary = true;
+      } else if (args[i].equals("--metrics")) {
+        measured = true;
+      } else if (args[i].equals("--telemetry")) {
+        telemetry = true;
+      } else if (args[i].equals("--engine")) {
+        engine = value(args, ++i);
+      } else if (args[i].equals("--threads")) {
+        threads = Integer.parseInt(value(args, ++i));
+      } else if (args[i].equals("--max-points")) {
+        maxPoints = Integer.parseInt(value(args, ++i));
+      } else if (args[i].equals("--max-roads")) {
+        maxRoads = Integer.parseInt(value(args, ++i));
+      } else if (args[i].equals("--file")) {
+        file = value(args, ++i);
+      } else if (args[i].equals("--output")) {
+        outputFile = value(args, ++i);
+      } else {
+        usage("Unknown option: " + args[i]);
+      }
+    }
+    if (!ENGINES.contains(engine)) {
+      usage("Unknown engine: " + engine);
+    }
+    if (binary && !engine.equals("cloud")) {
+      usage("--binary is only read by the cloud engine");
+    }
+    if (binary && file == null) {
+      usage("--binary needs the --file of the requests");
+    }
+
+    // Tokens are parsed straight from the stdin bytes or from the mapped file, whose channel is closed when done
+    // (the mapped regions stay mapped until they are garbage collected)
+    try (FastReader in = binary ? null : file == null ? new FastReader(System.in) : new MappedFileReader(Paths.get(file))) {
+      // Results are written to a reusable buffer and flushed in large chunks
+      FastWriter out = outputFile == null ? new FastWriter(System.out) : new FastWriter(openOutput(outputFile));
+      BillingMetrics metrics = null;
+      if (measured) {
+        metrics = new BillingMetrics();
+        metrics.register();
+      }
+      if (engine.equals("cloud")) {
+        CloudComputingService service = new CloudComputingService();
+        service.setMetrics(metrics);
+        if (binary) {
+          replayBinary(service, Paths.get(file), out);
+        } else {
+          service.processAll(in, out);
+        }
+      } else if (engine.equals("accounts") && threads > 1) {
+        CloudComputingPipeline pipeline = new CloudComputingPipeline(threads);
+        pipeline.setMetrics(metrics);
+        pipeline.process(in, out);
+      } else if (engine.equals("accounts")) {
+        CloudComputingAccounts accounts = new CloudComputingAccounts();
+        accounts.setMetrics(metrics);
+        accounts.processAll(in, out);
+      } else if (engine.equals("encode")) {
+        encodeBinary(in, out);
+      } else {
+        new JinDori(in, maxPoints, maxRoads, threads, offHeap, telemetry ? new JfrSimulationListener() : null).writeTo(out);
+      }
+      if (outputFile == null) {
+        out.flush();
+      } else {
+        out.close();
+      }
+      if (metrics != null) {
+        System.err.print(metrics.getReport());
+      }
+    }
+  }
+
+  private static String value(String[] args, int i) {
+    if (i == args.length) {
+      usage("Missing value of " + args[i - 1]);
+    }
+    return args[i];
+  }
+
+  private static void usage(String message) {
+    System.err.println(message);
+    System.err.println(USAGE);
+    System.exit(2);
+  }
+
+  private static void replayBinary(CloudComputingService service, Path path, FastWriter out) {
+    // Map whole requests at a time, at most 2GB per region
+    long regionSize = Integer.MAX_VALUE / BillingRequest.BYTES * BillingRequest.BYTES;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      for (long position = 0, size = channel.size(); position < size; position += regionSize) {
+        service.replay(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(regionSize, size - position)), out);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void encodeBinary(FastReader in, FastWriter out) {
+    BillingRequest request = new BillingRequest();
+    ByteBuffer buffer = ByteBuffer.allocate(BillingRequest.BYTES);
+    while (in.hasNext()) {
+      if (request.read(in) == null) {
+        continue;
+      }
+      buffer.clear();
+      request.write(buffer);
+      out.writeBytes(buffer.array(), 0, BillingRequest.BYTES);
     }
   }
 
-  private static String[] getStdin() {
-    Scanner scanner = new Scanner(System.in);
-    ArrayList<String> lines = new ArrayList<>();
-    while (scanner.hasNext()) {
-      lines.add(scanner.nextLine());
+  private static FileChannel openOutput(String path) {
+    try {
+      return FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
     }
-    return lines.toArray(new String[lines.size()]);
   }
 }
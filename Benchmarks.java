@@ -0,0 +1,373 @@
+package track;
+
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+/**
+ * Smoke runner of the JinDori and CloudComputingService hot paths, checks they run and gives rough numbers
+ * java -cp . track.Benchmarks [--filter NAME] [--warmup N] [--iterations N] [--seed N]
+ * Each line reports the throughput, the time per operation of the fastest, average and slowest iteration,
+ * the bytes allocated per operation and the garbage collections of the measured iterations
+ * Every benchmark runs in the same JVM, use the JMH benchmarks for numbers (mvn -P jmh package, java -jar target/benchmarks.jar)
+ */
+public class Benchmarks {
+    public static final int DEFAULT_WARMUP = 3;
+    public static final int DEFAULT_ITERATIONS = 5;
+
+    // Launch minute of the mix before any launch
+    private static final long NO_LAUNCH = Long.MIN_VALUE;
+
+    private final String filter;
+    private final int warmup;
+    private final int iterations;
+    private final long seed;
+    // Results of the operations are folded into it, so that the JIT cannot drop the work
+    private volatile long sink = 0;
+
+    /**
+     * @param filter only the benchmarks whose name contains it are run, null for all
+     * @param warmup iterations run before the measured ones
+     * @param iterations measured iterations
+     * @param seed seed of the generated graphs and requests
+     */
+    public Benchmarks(String filter, int warmup, int iterations, long seed){
+        this.filter = filter;
+        this.warmup = warmup;
+        this.iterations = iterations;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args){
+        String filter = null;
+        int warmup = DEFAULT_WARMUP;
+        int iterations = DEFAULT_ITERATIONS;
+        long seed = 1;
+        for(int i=0; i+1<args.length; i++){
+            if(args[i].equals("--filter"))
+                filter = args[++i];
+            else if(args[i].equals("--warmup"))
+                warmup = Integer.parseInt(args[++i]);
+            else if(args[i].equals("--iterations"))
+                iterations = Integer.parseInt(args[++i]);
+            else if(args[i].equals("--seed"))
+                seed = Long.parseLong(args[++i]);
+        }
+        new Benchmarks(filter, warmup, iterations, seed).runAll();
+    }
+
+    /**
+     * Run every benchmark matching the filter
+     */
+    public void runAll(){
+        System.out.println(String.format("%-14s %-34s %14s %12s %12s %12s %10s %4s",
+            "benchmark", "parameters", "ops/s", "min ns/op", "avg ns/op", "max ns/op", "B/op", "gc"));
+
+        for(String shape : new String[]{"sparse", "dense", "power-law"}){
+            for(int n : new int[]{1000, 100000}){
+                // A dense graph of 100000 points does not fit in memory
+                if(shape.equals("dense") && n > 1000)
+                    continue;
+                this.benchmarkRoadGraph(shape, n);
+                for(int palette : new int[]{4, 1000}){
+                    this.benchmarkColorStep(shape, n, palette);
+                    this.benchmarkColorsAtTimeK(shape, n, palette, 1000000000L);
+                }
+            }
+        }
+
+        for(int launches : new int[]{1, 100, 10000})
+            this.benchmarkBilling(launches, 100000, null);
+        // Overhead of measuring every request
+        this.benchmarkBilling(100, 100000, new BillingMetrics());
+        for(int launches : new int[]{1, 10000})
+            this.benchmarkBillingBurst(launches, 100000);
+    }
+
+    /**
+     * Build the compressed sparse rows of the roads, one operation per build
+     */
+    private void benchmarkRoadGraph(String shape, int n){
+        String name = "road-graph";
+        if(!this.isSelected(name))
+            return;
+        int[][] roads = generateRoads(shape, n, new WorkloadGenerator(this.seed));
+        int m = roads[0].length;
+        this.measure(name, shape + " n=" + n + " m=" + m, 1, new Trial(){
+            @Override
+            long run(int operation){
+                return RoadGraph.fromRoads(n, roads[0], roads[1], m).neighbors().length;
+            }
+        });
+    }
+
+    /**
+     * Proceed the colors one time, one operation per time
+     */
+    private void benchmarkColorStep(String shape, int n, int palette){
+        String name = "color-step";
+        if(!this.isSelected(name))
+            return;
+        WorkloadGenerator generator = new WorkloadGenerator(this.seed);
+        int[][] roads = generateRoads(shape, n, generator);
+        RoadGraph graph = RoadGraph.fromRoads(n, roads[0], roads[1], roads[0].length);
+        int[] c = generator.colors(n, palette);
+        this.measure(name, shape + " n=" + n + " colors=" + palette, 64, new Trial(){
+            private ColorDynamics dynamics;
+
+            @Override
+            void setUp(){
+                this.dynamics = new ColorDynamics(graph, c);
+            }
+
+            @Override
+            long run(int operation){
+                this.dynamics.step();
+                return this.dynamics.time();
+            }
+        });
+    }
+
+    /**
+     * Colors at time k with the cycle detection, one operation per input
+     */
+    private void benchmarkColorsAtTimeK(String shape, int n, int palette, long k){
+        String name = "colors-at-k";
+        if(!this.isSelected(name))
+            return;
+        WorkloadGenerator generator = new WorkloadGenerator(this.seed);
+        int[][] roads = generateRoads(shape, n, generator);
+        RoadGraph graph = RoadGraph.fromRoads(n, roads[0], roads[1], roads[0].length);
+        int[] c = generator.colors(n, palette);
+        this.measure(name, shape + " n=" + n + " colors=" + palette + " k=" + k, 1, new Trial(){
+            @Override
+            long run(int operation){
+                ColorDynamics dynamics = new ColorDynamics(graph, c);
+                dynamics.runUntil(k);
+                return dynamics.colors()[0];
+            }
+        });
+    }
+
+    /**
+     * Bill a mix of requests of a paid account with the given number of launches, one operation per request
+     */
+    private void benchmarkBilling(int launches, int requests, BillingMetrics metrics){
+        String name = metrics == null ? "billing" : "billing-metrics";
+        if(!this.isSelected(name))
+            return;
+        BillingRequest[] setUp = new BillingRequest[launches + 2];
+        BillingRequest[] mix = generateRequests(launches, requests, new SplittableRandom(this.seed), setUp);
+        ResponseEncoder response = new ResponseEncoder();
+        this.measure(name, "launches=" + launches, requests, new Trial(){
+            private CloudComputingService service;
+
+            @Override
+            void setUp(){
+                this.service = new CloudComputingService(CloudComputingServicePlan.newPlan());
+                this.service.setMetrics(metrics);
+                for(BillingRequest request : setUp)
+                    this.service.process(request, response.clear());
+            }
+
+            @Override
+            long run(int operation){
+                this.service.process(mix[operation], response.clear());
+                return response.size();
+            }
+        });
+    }
+
+    /**
+     * Bill a burst of uploads and deletes sent in the same minute, after launches spread over the previous months
+     */
+    private void benchmarkBillingBurst(int launches, int requests){
+        String name = "billing-burst";
+        if(!this.isSelected(name))
+            return;
+        SplittableRandom random = new SplittableRandom(this.seed);
+        long minute = EpochMinutes.parse("2022-01-01", "00:00");
+        BillingRequest[] setUp = new BillingRequest[launches + 2];
+        setUp[0] = new BillingRequest().set(Opcode.UPGRADE, minute, 0, '\0', 1e15);
+        // Shut down within years, the burst formats its shutdown date like any other request
+        setUp[1] = new BillingRequest().set(Opcode.CHANGE, ++minute, 0, CloudComputingServicePlan.USAGE_FEE_LMT_ABBRE, 1e8 * launches);
+        for(int launch=0; launch<launches; launch++)
+            setUp[launch + 2] = new BillingRequest().set(Opcode.LAUNCH, minute += 1 + random.nextInt(60), 0, '\0', 1 + random.nextInt(4));
+
+        BillingRequest[] burst = new BillingRequest[requests];
+        for(int index=0; index<requests; index++){
+            // Every other request deletes the file just uploaded
+            double amount = index % 2 == 0 ? 1 + random.nextInt(1 << 10) : burst[index - 1].getAmount();
+            burst[index] = new BillingRequest().set(index % 2 == 0 ? Opcode.UPLOAD : Opcode.DELETE, minute + 1, 0, '\0', amount);
+        }
+        FastWriter out = new FastWriter(new OutputStream(){
+            @Override
+            public void write(int b){
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len){
+            }
+        });
+        this.measure(name, "launches=" + launches + " burst=" + requests, 1, new Trial(){
+            private CloudComputingService service;
+
+            @Override
+            void setUp(){
+                this.service = new CloudComputingService(CloudComputingServicePlan.newPlan());
+                for(BillingRequest request : setUp)
+                    this.service.process(request, new ResponseEncoder());
+            }
+
+            @Override
+            long run(int operation){
+                this.service.process(burst, requests, out);
+                out.flush();
+                return this.service.getProjectedShutdownMinute();
+            }
+        });
+    }
+
+    /** ******************************
+     * ***** HELPER METHODS **********
+     * *******************************
+     */
+
+    /**
+     * One iteration of a benchmark: setUp is not measured, then every operation is run and the iteration is measured as a whole
+     */
+    private abstract static class Trial {
+        void setUp(){
+        }
+
+        /**
+         * @param operation
+         * @return long : any value depending on the result of the operation
+         */
+        abstract long run(int operation);
+    }
+
+    /**
+     * @param name
+     * @return boolean : true if the benchmark is run
+     */
+    private boolean isSelected(String name){
+        return this.filter == null || name.contains(this.filter);
+    }
+
+    /**
+     * Run the warmup and measured iterations of a benchmark and report them
+     * @param name
+     * @param parameters
+     * @param operations operations per iteration
+     * @param trial
+     */
+    private void measure(String name, String parameters, int operations, Trial trial){
+        long sink = 0;
+        for(int iteration=0; iteration<this.warmup; iteration++){
+            trial.setUp();
+            for(int operation=0; operation<operations; operation++)
+                sink += trial.run(operation);
+        }
+
+        // A single operation may be shorter than the timer resolution, only whole iterations are timed
+        long elapsed = 0;
+        long fastest = Long.MAX_VALUE;
+        long slowest = 0;
+        long allocated = 0;
+        long collections = collectionCount();
+        for(int iteration=0; iteration<this.iterations; iteration++){
+            trial.setUp();
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            for(int operation=0; operation<operations; operation++)
+                sink += trial.run(operation);
+            long time = System.nanoTime() - start;
+            allocated += allocatedBytes() - allocatedBefore;
+            elapsed += time;
+            fastest = Math.min(fastest, time);
+            slowest = Math.max(slowest, time);
+        }
+        collections = collectionCount() - collections;
+        this.sink += sink;
+
+        long total = (long) operations * this.iterations;
+        System.out.println(String.format("%-14s %-34s %14.1f %12.1f %12.1f %12.1f %10s %4d",
+            name, parameters, elapsed == 0 ? 0.0 : total * 1e9 / elapsed,
+            (double) fastest / operations, (double) elapsed / total, (double) slowest / operations,
+            allocated < 0 ? "n/a" : String.valueOf(allocated / total), collections));
+    }
+
+    /**
+     * @return long : bytes allocated by the current thread, -1 if the JVM does not count them
+     */
+    private static long allocatedBytes(){
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(!(threads instanceof com.sun.management.ThreadMXBean))
+            return -1;
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        return allocations.isThreadAllocatedMemorySupported() ? allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+
+    /**
+     * @return long : garbage collections since the JVM started
+     */
+    private static long collectionCount(){
+        long count = 0;
+        for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+            count += Math.max(0, collector.getCollectionCount());
+        return count;
+    }
+
+    /**
+     * Generate roads between n points (1-based)
+     * sparse: 2 uniform roads per point
+     * dense: as many uniform roads as half of the pairs of points
+     * power-law: 3 roads per point, a few points having most of the roads
+     * @param shape
+     * @param n
+     * @param generator
+     * @return int[][] : {u, v}
+     */
+    static int[][] generateRoads(String shape, int n, WorkloadGenerator generator){
+        int m = shape.equals("dense") ? (int) Math.min((long) n * (n - 1) / 4, Integer.MAX_VALUE / 2)
+            : shape.equals("sparse") ? n * 2
+            : n * 3;
+        int[] u = new int[m];
+        int[] v = new int[m];
+        generator.roads(shape.equals("power-law") ? WorkloadGenerator.Topology.POWER_LAW : WorkloadGenerator.Topology.UNIFORM, n, u, v, m);
+        return new int[][]{u, v};
+    }
+
+    /**
+     * Generate a request mix of a paid account, one minute apart, uploads and downloads being the most frequent
+     * @param launches instances launched at distinct minutes before the mix
+     * @param requests
+     * @param random
+     * @param setUp filled with the requests upgrading the plan and launching the instances
+     * @return BillingRequest[]
+     */
+    static BillingRequest[] generateRequests(int launches, int requests, SplittableRandom random, BillingRequest[] setUp){
+        long minute = EpochMinutes.parse("2022-01-01", "00:00");
+        setUp[0] = new BillingRequest().set(Opcode.UPGRADE, minute, 0, '\0', 1e15);
+        setUp[1] = new BillingRequest().set(Opcode.CHANGE, ++minute, 0, CloudComputingServicePlan.USAGE_FEE_LMT_ABBRE, 1e15);
+        for(int launch=0; launch<launches; launch++)
+            setUp[launch + 2] = new BillingRequest().set(Opcode.LAUNCH, ++minute, 0, '\0', 1 + random.nextInt(4));
+
+        BillingRequest[] mix = new BillingRequest[requests];
+        long lastLaunch = NO_LAUNCH;
+        for(int index=0; index<requests; index++){
+            minute++;
+            int draw = random.nextInt(100);
+            Opcode opcode = draw < 40 ? Opcode.UPLOAD : draw < 70 ? Opcode.DOWNLOAD : draw < 80 ? Opcode.DELETE
+                : draw < 90 ? Opcode.LAUNCH : draw < 99 ? Opcode.STOP : Opcode.CALC;
+            if(opcode == Opcode.STOP && lastLaunch == NO_LAUNCH)
+                opcode = Opcode.LAUNCH;
+            double amount = opcode == Opcode.LAUNCH || opcode == Opcode.STOP ? 1 : 1 + random.nextInt(1 << 20);
+            mix[index] = new BillingRequest().set(opcode, minute, opcode == Opcode.STOP ? lastLaunch : 0, '\0', amount);
+            lastLaunch = opcode == Opcode.LAUNCH ? minute : opcode == Opcode.STOP ? NO_LAUNCH : lastLaunch;
+        }
+        return mix;
+    }
+}
@@ -0,0 +1,231 @@
+package track;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters per opcode and outcome, latency histograms per opcode and gauges of the billed accounts
+ * Shared by any number of services and threads, every counter is striped
+ * A service without metrics pays a single null check per request
+ */
+public class BillingMetrics implements BillingMetricsMBean {
+    public static final String OBJECT_NAME = "track:type=BillingMetrics";
+
+    /**
+     * How a request was answered
+     */
+    public enum Outcome {
+        // The request changed the consumption, the plan or the instances
+        ACCEPTED,
+        // A limit of the plan would be exceeded (t, s or u)
+        LIMIT_EXCEEDED,
+        // Servers are shut down, please increase usage fee limit
+        OVERRUN,
+        // No such files, unknown instances, free plan or invalid value
+        INVALID
+    }
+
+    // Latencies are bucketed with 2^SUB_BUCKET_BITS buckets per power of two, within 12.5% of the recorded value
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Latencies from 2^MAX_EXPONENT ns (about 18 minutes) are recorded in an extra last bucket
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + 1;
+
+    private static final Opcode[] OPCODES = Opcode.values();
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+    // counts[opcode * OUTCOMES.length + outcome]
+    private final LongAdder[] counts = new LongAdder[OPCODES.length * OUTCOMES.length];
+    // latencies[opcode * BUCKETS + bucket]
+    private final LongAdder[] latencies = new LongAdder[OPCODES.length * BUCKETS];
+    private final DoubleAdder runningInstances = new DoubleAdder();
+    private final LongAdder projectedShutdowns = new LongAdder();
+
+    public BillingMetrics(){
+        for(int index=0; index<this.counts.length; index++)
+            this.counts[index] = new LongAdder();
+        for(int index=0; index<this.latencies.length; index++)
+            this.latencies[index] = new LongAdder();
+    }
+
+    /**
+     * @param opcode
+     * @param outcome
+     * @param nanos time spent processing the request
+     */
+    public void record(Opcode opcode, Outcome outcome, long nanos){
+        this.counts[opcode.ordinal() * OUTCOMES.length + outcome.ordinal()].increment();
+        this.latencies[opcode.ordinal() * BUCKETS + bucket(nanos)].increment();
+    }
+
+    /**
+     * @param instances change of the running instances of an account
+     * @param shutdowns change of the accounts with a projected shutdown (-1, 0 or 1)
+     */
+    void update(double instances, int shutdowns){
+        if(instances != 0)
+            this.runningInstances.add(instances);
+        if(shutdowns != 0)
+            this.projectedShutdowns.add(shutdowns);
+    }
+
+    /**
+     * @param opcode
+     * @param outcome
+     * @return long : number of requests of the opcode with the outcome
+     */
+    public long count(Opcode opcode, Outcome outcome){
+        return this.counts[opcode.ordinal() * OUTCOMES.length + outcome.ordinal()].sum();
+    }
+
+    /**
+     * @param outcome
+     * @return long : number of requests of every opcode with the outcome
+     */
+    public long count(Outcome outcome){
+        long count = 0;
+        for(Opcode opcode : OPCODES)
+            count += this.count(opcode, outcome);
+        return count;
+    }
+
+    /**
+     * @param opcode
+     * @param fraction 0.5 for the median, 0.99 for the 99th percentile
+     * @return long : latency in ns, the highest value of its bucket, 0 if no request was recorded
+     */
+    public long percentile(Opcode opcode, double fraction){
+        long[] buckets = new long[BUCKETS];
+        long total = 0;
+        for(int bucket=0; bucket<BUCKETS; bucket++){
+            buckets[bucket] = this.latencies[opcode.ordinal() * BUCKETS + bucket].sum();
+            total += buckets[bucket];
+        }
+        if(total == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(total * fraction));
+        for(int bucket=0; bucket<BUCKETS; bucket++){
+            rank -= buckets[bucket];
+            if(rank <= 0)
+                return highestValue(bucket);
+        }
+        return highestValue(BUCKETS - 1);
+    }
+
+    /**
+     * Register the metrics to the platform MBean server under OBJECT_NAME
+     * @return ObjectName
+     */
+    public ObjectName register(){
+        try{
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            return name;
+        }catch(JMException e){
+            throw new IllegalStateException("Cannot register the billing metrics", e);
+        }
+    }
+
+    @Override
+    public long getRequests(){
+        long requests = 0;
+        for(LongAdder count : this.counts)
+            requests += count.sum();
+        return requests;
+    }
+
+    @Override
+    public long getAccepted(){
+        return this.count(Outcome.ACCEPTED);
+    }
+
+    @Override
+    public long getLimitExceeded(){
+        return this.count(Outcome.LIMIT_EXCEEDED);
+    }
+
+    @Override
+    public long getOverruns(){
+        return this.count(Outcome.OVERRUN);
+    }
+
+    @Override
+    public long getInvalid(){
+        return this.count(Outcome.INVALID);
+    }
+
+    /**
+     * Instances launched and not stopped, until a CALC or CHANGE clears them after their shutdown
+     * @return double
+     */
+    @Override
+    public double getRunningInstances(){
+        return this.runningInstances.sum();
+    }
+
+    /**
+     * @return long : number of accounts with a projected shutdown
+     */
+    @Override
+    public long getProjectedShutdowns(){
+        return this.projectedShutdowns.sum();
+    }
+
+    /**
+     * One line per opcode: requests of each outcome and latency percentiles, then the gauges
+     * @return String
+     */
+    @Override
+    public String getReport(){
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-9s %10s %10s %10s %10s %10s %10s %10s%n",
+            "opcode", "accepted", "limit", "overrun", "invalid", "p50 ns", "p99 ns", "max ns"));
+        for(Opcode opcode : OPCODES){
+            report.append(String.format("%-9s %10d %10d %10d %10d %10d %10d %10d%n", opcode,
+                this.count(opcode, Outcome.ACCEPTED), this.count(opcode, Outcome.LIMIT_EXCEEDED),
+                this.count(opcode, Outcome.OVERRUN), this.count(opcode, Outcome.INVALID),
+                this.percentile(opcode, 0.5), this.percentile(opcode, 0.99), this.percentile(opcode, 1.0)));
+        }
+        report.append(String.format("running instances %.0f, projected shutdowns %d%n",
+            this.getRunningInstances(), this.getProjectedShutdowns()));
+        return report.toString();
+    }
+
+    /** ******************************
+     * ***** HELPER METHODS **********
+     * *******************************
+     */
+
+    /**
+     * @param nanos
+     * @return int : bucket of the latency, values below SUB_BUCKETS have their own bucket
+     */
+    private static int bucket(long nanos){
+        if(nanos < SUB_BUCKETS)
+            return (int) Math.max(0, nanos);
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(nanos), MAX_EXPONENT);
+        if(exponent == MAX_EXPONENT)
+            return BUCKETS - 1;
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param bucket
+     * @return long : highest latency of the bucket
+     */
+    private static long highestValue(int bucket){
+        if(bucket < SUB_BUCKETS)
+            return bucket;
+        if(bucket == BUCKETS - 1)
+            return Long.MAX_VALUE;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
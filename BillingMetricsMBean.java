@@ -0,0 +1,22 @@
+package track;
+
+/**
+ * Attributes of BillingMetrics exposed through JMX
+ */
+public interface BillingMetricsMBean {
+    long getRequests();
+
+    long getAccepted();
+
+    long getLimitExceeded();
+
+    long getOverruns();
+
+    long getInvalid();
+
+    double getRunningInstances();
+
+    long getProjectedShutdowns();
+
+    String getReport();
+}
@@ -0,0 +1,189 @@
+package track;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class BillingRequest {
+    // Binary format: opcode (1 byte), abbreviation (1 byte), padding (2 bytes),
+    // sent minute (4 bytes), launch minute (4 bytes), amount (8 bytes), little-endian
+    public static final int BYTES = 20;
+
+    // Opcode and abbreviation names matched by the token reader, in the order of their index
+    private static final String[] OPCODE_NAMES;
+    private static final String[] ABBREVIATIONS = {
+        String.valueOf(CloudComputingServicePlan.TRN_AMT_LMT_ABBRE),
+        String.valueOf(CloudComputingServicePlan.STR_SPC_LMT_ABBRE),
+        String.valueOf(CloudComputingServicePlan.USAGE_FEE_LMT_ABBRE)};
+    static {
+        OPCODE_NAMES = new String[Opcode.values().length];
+        for(Opcode opcode : Opcode.values())
+            OPCODE_NAMES[opcode.ordinal()] = opcode.name();
+    }
+
+    private Opcode opcode;
+    private long sentMinute;
+    private long launchMinute;
+    private char abbreviation;
+    private double amount;
+
+    /**
+     * Request to fill with set, parse or read
+     */
+    public BillingRequest(){
+    }
+
+    /**
+     * @param opcode
+     * @param sentMinute minutes since 1970-01-01 00:00 the request is sent, ignored for CALC
+     * @param launchMinute minutes since 1970-01-01 00:00 of the instances to stop, ignored except for STOP
+     * @param abbreviation abbreviation of the limit to change, ignored except for CHANGE
+     * @param amount size, instances or limit of the request, ignored for CALC
+     * @return BillingRequest : this request
+     */
+    public BillingRequest set(Opcode opcode, long sentMinute, long launchMinute, char abbreviation, double amount){
+        this.opcode = opcode;
+        this.sentMinute = sentMinute;
+        this.launchMinute = launchMinute;
+        this.abbreviation = abbreviation;
+        this.amount = amount;
+        return this;
+    }
+
+    /**
+     * Decode a request line
+     * UPLOAD, DOWNLOAD, DELETE, LAUNCH, UPGRADE: type date time size
+     * STOP: type date time launchDate launchTime size
+     * CHANGE: type date time abbreviation limit
+     * CALC: type
+     * @param line
+     * @return boolean : false if the type is unknown, the request is then left unchanged
+     */
+    public boolean parse(String line){
+        String[] requestInfo = line.split(" ");
+        Opcode opcode = null;
+        for(int index=0; index<OPCODE_NAMES.length && opcode == null; index++){
+            if(OPCODE_NAMES[index].equals(requestInfo[0]))
+                opcode = Opcode.of(index);
+        }
+        if(opcode == null)
+            return false;
+        if(opcode == Opcode.CALC){
+            this.set(opcode, 0, 0, '\0', 0);
+            return true;
+        }
+
+        long sentMinute = EpochMinutes.parse(requestInfo[1], requestInfo[2]);
+        switch(opcode){
+            case STOP:
+                this.set(opcode, sentMinute, EpochMinutes.parse(requestInfo[3], requestInfo[4]), '\0', Double.parseDouble(requestInfo[5]));
+                break;
+            case CHANGE:
+                this.set(opcode, sentMinute, 0, requestInfo[3].charAt(0), Double.parseDouble(requestInfo[4]));
+                break;
+            default:
+                this.set(opcode, sentMinute, 0, '\0', Double.parseDouble(requestInfo[3]));
+        }
+        return true;
+    }
+
+    /**
+     * Decode the tokens of the next request, in the same format as parse
+     * @param in
+     * @return BillingRequest : this request, null if the type is unknown, the rest of its line is then skipped and the request left unchanged
+     */
+    public BillingRequest read(FastReader in){
+        int index = in.tryNextIndexOf(OPCODE_NAMES);
+        if(index < 0){
+            in.skipLine();
+            return null;
+        }
+        Opcode opcode = Opcode.of(index);
+        if(opcode == Opcode.CALC)
+            return this.set(opcode, 0, 0, '\0', 0);
+
+        long sentMinute = in.nextEpochMinute();
+        long launchMinute = opcode == Opcode.STOP ? in.nextEpochMinute() : 0;
+        char abbreviation = opcode == Opcode.CHANGE ? ABBREVIATIONS[in.nextIndexOf(ABBREVIATIONS)].charAt(0) : '\0';
+        return this.set(opcode, sentMinute, launchMinute, abbreviation, in.nextDouble());
+    }
+
+    /**
+     * Decode the next request of the binary format at the position of the buffer
+     * @param buffer
+     * @return BillingRequest : this request
+     */
+    public BillingRequest read(ByteBuffer buffer){
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        Opcode opcode = Opcode.of(buffer.get());
+        char abbreviation = (char) (buffer.get() & 0xff);
+        buffer.getShort();
+        long sentMinute = buffer.getInt();
+        long launchMinute = buffer.getInt();
+        this.set(opcode, sentMinute, launchMinute, abbreviation, buffer.getDouble());
+        buffer.order(order);
+        return this;
+    }
+
+    /**
+     * Encode the request in the binary format at the position of the buffer
+     * @param buffer
+     */
+    public void write(ByteBuffer buffer){
+        if(this.sentMinute != (int) this.sentMinute || this.launchMinute != (int) this.launchMinute || this.abbreviation > 0xff)
+            throw new IllegalArgumentException("Request out of range of the binary format: " + this);
+
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) this.opcode.ordinal());
+        buffer.put((byte) this.abbreviation);
+        buffer.putShort((short) 0);
+        buffer.putInt((int) this.sentMinute);
+        buffer.putInt((int) this.launchMinute);
+        buffer.putDouble(this.amount);
+        buffer.order(order);
+    }
+
+    /**
+     * Encode the request line in the same format as parse, amounts without fraction digits
+     * @param line the request line is appended to it
+     * @return ResponseEncoder : the line
+     */
+    public ResponseEncoder format(ResponseEncoder line){
+        line.text(this.opcode.name());
+        if(this.opcode == Opcode.CALC)
+            return line;
+
+        line.space().dateTime(this.sentMinute, ' ').space();
+        if(this.opcode == Opcode.STOP)
+            line.dateTime(this.launchMinute, ' ').space();
+        else if(this.opcode == Opcode.CHANGE)
+            line.character(this.abbreviation).space();
+        return line.amount(this.amount, false);
+    }
+
+    public Opcode getOpcode(){
+        return this.opcode;
+    }
+
+    public long getSentMinute(){
+        return this.sentMinute;
+    }
+
+    public long getLaunchMinute(){
+        return this.launchMinute;
+    }
+
+    public char getAbbreviation(){
+        return this.abbreviation;
+    }
+
+    public double getAmount(){
+        return this.amount;
+    }
+
+    @Override
+    public String toString(){
+        return this.opcode + " " + this.sentMinute + " " + this.launchMinute + " " + (int) this.abbreviation + " " + this.amount;
+    }
+}
@@ -0,0 +1,212 @@
+package track;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CloudComputingAccounts {
+    // Open addressing table from account id to the index of its service (index + 1, 0 if the slot is free)
+    private long[] accountIds = new long[1024];
+    private int[] slots = new int[1024];
+    // Service of each account in the order of their first request, each with its own plan and consumption
+    // Accounts are whole services rather than rows of primitive tables, so they share every billing rule of the service:
+    // about 600 bytes per account, the service and its ledger, plan and their arrays, its slots here and in the scheduler
+    private CloudComputingService[] services = new CloudComputingService[512];
+    private int size = 0;
+    // Logs of the requests given to the constructors, null if the logs are streamed by processAll
+    private List<String> output = null;
+    // Request and log buffers shared by the accounts
+    private final BillingRequest request = new BillingRequest();
+    private final ResponseEncoder response = new ResponseEncoder();
+    // Projected auto-shutdown of every account with running instances
+    private final ShutdownScheduler shutdowns = new ShutdownScheduler();
+    // Measures the requests of every account, null if not measured
+    private BillingMetrics metrics = null;
+
+    /**
+     * Accounts without requests yet, the requests are given to processAll
+     */
+    public CloudComputingAccounts(){
+    }
+
+    /**
+     * Every request starts with the id of its account, requests of the accounts can be interleaved
+     * e.g. 42 UPLOAD 2022-01-01 00:00 10
+     * @param getStdin
+     */
+    public CloudComputingAccounts(String[] getStdin){
+        this.output = new ArrayList<String>();
+        for(String request : getStdin){
+            int space = request.indexOf(' ');
+            long accountId = Long.parseLong(request.substring(0, space));
+            if(!this.request.parse(request.substring(space + 1)))
+                continue;
+            this.process(accountId, this.request, this.response.clear());
+            output.add(accountId + " " + this.response);
+        }
+    }
+
+    /**
+     * Read the requests as a stream of tokens, the id of the account first
+     * @param in tokens of the requests
+     */
+    public CloudComputingAccounts(FastReader in){
+        this(in, null);
+    }
+
+    /**
+     * Read the requests as a stream of tokens, the id of the account first
+     * @param in tokens of the requests
+     * @param metrics measures the requests of every account, null if not measured
+     */
+    public CloudComputingAccounts(FastReader in, BillingMetrics metrics){
+        this.metrics = metrics;
+        this.output = new ArrayList<String>();
+        while(in.hasNext()){
+            long accountId = in.nextLong();
+            if(this.request.read(in) == null)
+                continue;
+            this.process(accountId, this.request, this.response.clear());
+            output.add(accountId + " " + this.response);
+        }
+    }
+
+    /**
+     * Process every request of a stream, logs are written as they are produced and not added to the output
+     * @param in tokens of the requests, the id of the account first
+     * @param out log of each request preceded by the id of its account, one per line
+     */
+    public void processAll(FastReader in, FastWriter out){
+        while(in.hasNext()){
+            long accountId = in.nextLong();
+            if(this.request.read(in) == null)
+                continue;
+            this.process(accountId, this.request, this.response.clear());
+            out.writeLong(accountId).writeByte(' ');
+            this.response.writeTo(out);
+            out.newLine();
+        }
+    }
+
+    /**
+     * Measure the requests of every account, null to stop measuring
+     * @param metrics
+     */
+    public void setMetrics(BillingMetrics metrics){
+        this.metrics = metrics;
+        for(int index=0; index<this.size; index++)
+            this.services[index].setMetrics(metrics);
+    }
+
+    /**
+     * @return int : number of accounts
+     */
+    public int size(){
+        return this.size;
+    }
+
+    /**
+     * Fire the auto-shutdown of every account whose servers go down at or before the given minute, earliest first
+     * An account fires once per projection, a request moving its projection schedules it again
+     * @param minute minutes since 1970-01-01 00:00
+     * @param listener
+     * @return int : number of fired shutdowns
+     */
+    public int advanceTo(long minute, ShutdownScheduler.Listener listener){
+        return this.shutdowns.advanceTo(minute, listener);
+    }
+
+    /**
+     * @return long : earliest projected auto-shutdown minute, ShutdownScheduler.NONE if no servers are running
+     */
+    public long nextShutdownMinute(){
+        return this.shutdowns.nextShutdownMinute();
+    }
+
+    /** 
+     * Return the overall output, each log preceded by the id of its account
+     * @return String[]
+     */
+    public String[] getOutput(){
+        if(output == null)
+            return new String[0];
+        return output.toArray(new String[output.size()]);
+    }
+
+    /** 
+     * Write the overall output, one log per line
+     * @param out
+     */
+    public void writeTo(FastWriter out){
+        if(output == null)
+            return;
+        for(String log : output)
+            out.writeAscii(log).newLine();
+    }
+
+    /** ******************************
+     * ***** HELPER METHODS **********
+     * *******************************
+     */
+
+    /**
+     * Process the request of the account and reschedule its auto-shutdown
+     * @param accountId
+     * @param request
+     * @param response the log of the request is appended to it
+     */
+    void process(long accountId, BillingRequest request, ResponseEncoder response){
+        CloudComputingService service = this.getAccount(accountId);
+        service.process(request, response);
+        this.shutdowns.schedule(accountId, service.getProjectedShutdownMinute());
+    }
+
+    /**
+     * Get the service of the account, a new account starts with the Free Tier plan
+     * @param accountId
+     * @return CloudComputingService
+     */
+    CloudComputingService getAccount(long accountId){
+        int slot = this.find(accountId);
+        if(this.slots[slot] != 0)
+            return this.services[this.slots[slot] - 1];
+
+        if(this.size == this.services.length)
+            this.services = Arrays.copyOf(this.services, this.size * 2);
+        CloudComputingService service = new CloudComputingService(CloudComputingServicePlan.newPlan());
+        service.setMetrics(this.metrics);
+        this.services[this.size++] = service;
+        this.accountIds[slot] = accountId;
+        this.slots[slot] = this.size;
+
+        if(this.size * 2 > this.slots.length)
+            this.grow();
+        return service;
+    }
+
+    /**
+     * @param accountId
+     * @return int : slot of the account, or the free slot where it would be stored
+     */
+    private int find(long accountId){
+        int mask = this.slots.length - 1;
+        int slot = Long.hashCode(accountId * 0x9E3779B97F4A7C15L) & mask;
+        while(this.slots[slot] != 0 && this.accountIds[slot] != accountId)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void grow(){
+        long[] accountIds = this.accountIds;
+        int[] slots = this.slots;
+        this.accountIds = new long[slots.length * 2];
+        this.slots = new int[slots.length * 2];
+        for(int slot=0; slot<slots.length; slot++){
+            if(slots[slot] == 0)
+                continue;
+            int newSlot = this.find(accountIds[slot]);
+            this.accountIds[newSlot] = accountIds[slot];
+            this.slots[newSlot] = slots[slot];
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package track;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CloudComputingPipeline {
+    public static final int DEFAULT_QUEUE_SIZE = 1 << 12;
+
+    private final Shard[] shards;
+    // Number of parsed requests, -1 until the parse stage reached the end of the input
+    private volatile long parsedRequests = -1;
+    private volatile Throwable failure = null;
+
+    /**
+     * @param shards number of worker threads, each owning the accounts routed to it
+     */
+    public CloudComputingPipeline(int shards){
+        this(shards, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * @param shards number of worker threads, each owning the accounts routed to it
+     * @param queueSize requests buffered between the stages of each shard (power of two)
+     */
+    public CloudComputingPipeline(int shards, int queueSize){
+        if(shards < 1 || Integer.bitCount(queueSize) != 1)
+            throw new IllegalArgumentException("Invalid number of shards or queue size: " + shards + " " + queueSize);
+
+        this.shards = new Shard[shards];
+        for(int shard=0; shard<shards; shard++)
+            this.shards[shard] = new Shard(queueSize);
+    }
+
+    /**
+     * Measure the requests of every shard, null to stop measuring
+     * Call before process, the shards are not running yet
+     * @param metrics
+     */
+    public void setMetrics(BillingMetrics metrics){
+        for(Shard shard : this.shards)
+            shard.accounts.setMetrics(metrics);
+    }
+
+    /**
+     * Bill the requests prefixed with an account id, as CloudComputingAccounts does
+     * One thread parses the requests and routes them by account to the shards,
+     * each shard bills its accounts on its own thread, and the calling thread writes
+     * the logs back in the order of the requests
+     * @param in tokens of the requests
+     * @param out
+     */
+    public void process(FastReader in, FastWriter out){
+        Thread[] threads = new Thread[this.shards.length + 1];
+        threads[0] = new Thread(() -> this.parse(in), "billing-parse");
+        for(int shard=0; shard<this.shards.length; shard++)
+            threads[shard + 1] = new Thread(this.shards[shard]::run, "billing-shard-" + shard);
+        for(Thread thread : threads){
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        this.merge(out);
+
+        for(Thread thread : threads){
+            try{
+                thread.join();
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the billing threads", e);
+            }
+        }
+    }
+
+    /** ******************************
+     * ***** HELPER METHODS **********
+     * *******************************
+     */
+
+    /**
+     * Parse stage: read every request and hand it to the shard of its account
+     * @param in
+     */
+    private void parse(FastReader in){
+        BillingRequest request = new BillingRequest();
+        long sequence = 0;
+        try{
+            while(in.hasNext() && this.failure == null){
+                long accountId = in.nextLong();
+                if(request.read(in) == null)
+                    continue;
+
+                Shard shard = this.shards[Math.floorMod(Long.hashCode(accountId * 0x9E3779B97F4A7C15L), this.shards.length)];
+                if(!shard.offer(sequence, accountId, request))
+                    break;
+                sequence++;
+            }
+        }catch(Throwable e){
+            this.fail(e);
+        }finally{
+            this.parsedRequests = sequence;
+            for(Shard shard : this.shards)
+                shard.isInputClosed = true;
+        }
+    }
+
+    /**
+     * Merge stage: write the log of every request in the order of the requests
+     * Every shard outputs its requests in order, so the next log is at the head of one of the shards
+     * @param out
+     */
+    private void merge(FastWriter out){
+        long sequence = 0;
+        while(true){
+            boolean isProgressed = false;
+            for(Shard shard : this.shards){
+                while(shard.hasOutput(sequence)){
+                    shard.writeOutput(out);
+                    sequence++;
+                    isProgressed = true;
+                }
+            }
+            if(isProgressed)
+                continue;
+
+            if(this.failure != null)
+                throw new IllegalStateException("Billing pipeline failed", this.failure);
+            if(this.parsedRequests == sequence)
+                return;
+            Thread.yield();
+        }
+    }
+
+    /**
+     * @param e
+     */
+    private void fail(Throwable e){
+        if(this.failure == null)
+            this.failure = e;
+    }
+
+    /**
+     * Worker stage owning a disjoint set of accounts
+     * Requests come from the parse thread and logs go to the merge thread through
+     * single producer single consumer rings, so no account state is ever shared
+     */
+    private final class Shard {
+        private final CloudComputingAccounts accounts = new CloudComputingAccounts();
+        private final int mask;
+
+        // Parsed requests, written by the parse thread up to inputTail, read by the shard from inputHead
+        private final long[] sequences;
+        private final long[] accountIds;
+        private final Opcode[] opcodes;
+        private final long[] sentMinutes;
+        private final long[] launchMinutes;
+        private final char[] abbreviations;
+        private final double[] amounts;
+        private final AtomicLong inputHead = new AtomicLong();
+        private final AtomicLong inputTail = new AtomicLong();
+        private volatile boolean isInputClosed = false;
+
+        // Logs, written by the shard up to outputTail, read by the merge thread from outputHead
+        private final long[] outputSequences;
+        private final long[] outputAccountIds;
+        private final String[] logs;
+        private final AtomicLong outputHead = new AtomicLong();
+        private final AtomicLong outputTail = new AtomicLong();
+
+        private Shard(int queueSize){
+            this.mask = queueSize - 1;
+            this.sequences = new long[queueSize];
+            this.accountIds = new long[queueSize];
+            this.opcodes = new Opcode[queueSize];
+            this.sentMinutes = new long[queueSize];
+            this.launchMinutes = new long[queueSize];
+            this.abbreviations = new char[queueSize];
+            this.amounts = new double[queueSize];
+            this.outputSequences = new long[queueSize];
+            this.outputAccountIds = new long[queueSize];
+            this.logs = new String[queueSize];
+        }
+
+        /**
+         * Called by the parse thread only, waits while the ring is full
+         * @return boolean : false if the pipeline failed
+         */
+        private boolean offer(long sequence, long accountId, BillingRequest request){
+            long tail = this.inputTail.get();
+            while(tail - this.inputHead.get() > this.mask){
+                if(failure != null)
+                    return false;
+                Thread.yield();
+            }
+            int slot = (int) tail & this.mask;
+            this.sequences[slot] = sequence;
+            this.accountIds[slot] = accountId;
+            this.opcodes[slot] = request.getOpcode();
+            this.sentMinutes[slot] = request.getSentMinute();
+            this.launchMinutes[slot] = request.getLaunchMinute();
+            this.abbreviations[slot] = request.getAbbreviation();
+            this.amounts[slot] = request.getAmount();
+            // Publish the request after its fields are written
+            this.inputTail.lazySet(tail + 1);
+            return true;
+        }
+
+        /**
+         * Bill the requests of the ring until the parse stage is done
+         */
+        private void run(){
+            BillingRequest request = new BillingRequest();
+            ResponseEncoder response = new ResponseEncoder();
+            try{
+                long head = this.inputHead.get();
+                while(failure == null){
+                    if(head == this.inputTail.get()){
+                        if(this.isInputClosed && head == this.inputTail.get())
+                            return;
+                        Thread.yield();
+                        continue;
+                    }
+
+                    int slot = (int) head & this.mask;
+                    long accountId = this.accountIds[slot];
+                    request.set(this.opcodes[slot], this.sentMinutes[slot], this.launchMinutes[slot], this.abbreviations[slot], this.amounts[slot]);
+                    this.accounts.process(accountId, request, response.clear());
+                    String log = response.toString();
+                    long sequence = this.sequences[slot];
+                    this.inputHead.lazySet(++head);
+
+                    this.putOutput(sequence, accountId, log);
+                }
+            }catch(Throwable e){
+                fail(e);
+            }
+        }
+
+        /**
+         * Called by the shard thread only, waits while the ring is full
+         */
+        private void putOutput(long sequence, long accountId, String log){
+            long tail = this.outputTail.get();
+            while(tail - this.outputHead.get() > this.mask){
+                if(failure != null)
+                    return;
+                Thread.yield();
+            }
+            int slot = (int) tail & this.mask;
+            this.outputSequences[slot] = sequence;
+            this.outputAccountIds[slot] = accountId;
+            this.logs[slot] = log;
+            this.outputTail.lazySet(tail + 1);
+        }
+
+        /**
+         * Called by the merge thread only
+         * @param sequence
+         * @return boolean : true if the log of the request is at the head of the ring
+         */
+        private boolean hasOutput(long sequence){
+            long head = this.outputHead.get();
+            return head != this.outputTail.get() && this.outputSequences[(int) head & this.mask] == sequence;
+        }
+
+        /**
+         * Called by the merge thread only, write the log at the head of the ring
+         * @param out
+         */
+        private void writeOutput(FastWriter out){
+            long head = this.outputHead.get();
+            int slot = (int) head & this.mask;
+            out.writeLong(this.outputAccountIds[slot]).writeByte(' ').writeAscii(this.logs[slot]).newLine();
+            this.logs[slot] = null;
+            this.outputHead.lazySet(head + 1);
+        }
+    }
+}
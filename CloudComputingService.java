@@ -1,435 +1,675 @@
 package track;
 
-import java.math.RoundingMode;
-import java.text.DecimalFormat;
-import java.time.Duration;
-import java.time.LocalDateTime;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.HashMap;
 
 public class CloudComputingService {
-    private DecimalFormat doubleFormat = new DecimalFormat("###");
+    private static final long NONE = Long.MIN_VALUE;
+    private static final char NO_ABBREVIATION = '\0';
+    // Amounts are rounded down once a usage fee is computed
+    private boolean isRoundingDown = false;
+    // Encoder of the logs returned as Strings, allocated on first use
+    private ResponseEncoder response = null;
 
     private CloudComputingServicePlan myCCSPlan;
-    private Map<LocalDateTime, Double> instances = new HashMap<LocalDateTime, Double>();
-    private Map<Character, Double> consumption = new HashMap<Character, Double>();
+    // Running instances by launch minute, with the running count and uptime kept incrementally
+    private InstanceLedger instances = new InstanceLedger();
+    // Consumed transfer amount, storage space and usage fee
+    private double transferAmount = 0;
+    private double storageSpace = 0;
+    private double usageFee = 0;
     private double peakStorageSpace = 0;
     private double uptimeSpent = 0;
-    private LocalDateTime shutdownDateTime = null;
-    private LocalDateTime currentDateTime = null;
+    // Minutes since 1970-01-01 00:00, NONE if not known yet
+    private long shutdownMinute = NONE;
+    private long currentMinute = NONE;
+    // Minute and usage fee of the last shutdown projection of an UPLOAD or DOWNLOAD, NONE once another opcode
+    // may change the instances, the uptime or the plan; storage bursts of one minute reuse the projection
+    private long projectionMinute = NONE;
+    private double projectionUsageFee = 0;
     private double currentTotalUptime = 0.0;
-    private List<String> output = new ArrayList<String>();
+    // Logs of the requests given to the constructor, null if the requests are given one by one
+    private List<String> output = null;
+
+    // Decoded request reused by the line and token readers, allocated on their first request
+    private BillingRequest request = null;
+    // Null unless the requests are measured, outcome is set by the handlers rejecting a request
+    private BillingMetrics metrics = null;
+    private BillingMetrics.Outcome outcome = BillingMetrics.Outcome.ACCEPTED;
 
     public CloudComputingService(String[] getStdin){
-        // Set initial plan to Free Tier
-        myCCSPlan = CloudComputingServicePlan.getPlan();
-        consumption.put(CloudComputingServicePlan.TRN_AMT_LMT_ABBRE, 0.0);
-        consumption.put(CloudComputingServicePlan.STR_SPC_LMT_ABBRE, 0.0);
-        consumption.put(CloudComputingServicePlan.USAGE_FEE_LMT_ABBRE, 0.0);
+        this();
+        this.output = new ArrayList<String>();
 
         // Iterate every request
         for(String request : getStdin){
-            String[] requestInfo = request.split(" ");
-            // The request type: UPLOAD, DOWNLOAD, DELETE, LAUNCH, STOP, CALC, UPGRADE, CHANGE
-            String type = requestInfo[0];
-            String sentDate = !type.equals("CALC") ? requestInfo[1] : "";
-            String sentTime = !type.equals("CALC") ? requestInfo[2] : "";
-            // The date and time the request is sent.
-            LocalDateTime sentDateTime = !sentDate.isEmpty() && !sentTime.isEmpty() ? LocalDateTime.parse(sentDate +"T" + sentTime) : null;
-            currentDateTime = sentDateTime != null ? sentDateTime : currentDateTime;
-            Double requestSize = type.equals("CALC") ? null : 
-                                type.equals("STOP") ? Double.parseDouble(requestInfo[5]) : 
-                                type.equals("CHANGE") ? Double.parseDouble(requestInfo[4]) :
-                                Double.parseDouble(requestInfo[3]);
-
-            // Status is Usage Fee Overrun State
-            if(shutdownDateTime != null && sentDateTime != null && sentDateTime.isAfter(shutdownDateTime)
-                 && !type.equals("UPGRADE") && !type.equals("CHANGE")){
-                output.add(String.format("%s: please increase usage fee limit", type));
-                continue;
-            }
-
-            // Proceed if request is UPLOAD
-            String log = this.getUpload(type, sentDateTime, requestSize);
-            if(!log.isEmpty()){
+            String log = this.process(request);
+            if(!log.isEmpty())
                 output.add(log);
-                continue;
-            }
+        }
+    }
 
-            // Proceed if request is DOWNLOAD
-            log = this.getDownload(type, sentDateTime, requestSize);
-            if(!log.isEmpty()){
-                output.add(log);
-                continue;
-            }
+    /**
+     * Read the requests as a stream of tokens without materializing its lines
+     * UPLOAD, DOWNLOAD, DELETE, LAUNCH, UPGRADE: type date time size
+     * STOP: type date time launchDate launchTime size
+     * CHANGE: type date time abbreviation limit
+     * CALC: type
+     * @param in tokens of the requests
+     */
+    public CloudComputingService(FastReader in){
+        this();
+        this.output = new ArrayList<String>();
 
-            // Proceed if request is DELETE
-            log = this.getDelete(type, requestSize);
-            if(!log.isEmpty()){
+        while(in.hasNext()){
+            String log = this.process(in);
+            if(!log.isEmpty())
                 output.add(log);
-                continue;
-            }
+        }
+    }
 
-            // Proceed if request is LAUNCH
-            log = this.getLaunch(type, sentDateTime, requestSize);
-            if(!log.isEmpty()){
-                output.add(log);
-                continue;
-            }
+    /**
+     * Long-lived service without requests yet, requests are given one by one to process
+     */
+    public CloudComputingService(){
+        // Set initial plan to Free Tier
+        this(CloudComputingServicePlan.newPlan());
+    }
 
-            // Proceed if request is STOP
-            String launchDate = type.equals("STOP") ? requestInfo[3] : "";
-            String launchTime = type.equals("STOP") ? requestInfo[4] : "";
-            LocalDateTime launchDateTime = !launchDate.isEmpty() && !launchTime.isEmpty() ? LocalDateTime.parse(launchDate + "T" + launchTime) : null;
-            
-            log = this.getStop(type, sentDateTime, launchDateTime, requestSize);
-            if(!log.isEmpty()){
-                output.add(log);
-                continue;
-            }
+    /**
+     * Service of a single account, with its own plan and consumption
+     * Nothing else is allocated until a request needs it, e.g. for the many accounts of CloudComputingAccounts
+     * @param plan
+     */
+    CloudComputingService(CloudComputingServicePlan plan){
+        myCCSPlan = plan;
+    }
 
-            // Proceed if request is CALC
-            log = this.getCalc(type);
-            if(!log.isEmpty()){
-                output.add(log);
-                continue;
-            }
+    /**
+     * Process a single request, its log is returned and not added to the output
+     * @param request e.g. UPLOAD 2022-01-01 00:00 10
+     * @return String : log of the request, empty if the type is unknown
+     */
+    public String process(String request){
+        if(!this.request().parse(request))
+            return "";
+        return this.process(this.request());
+    }
 
-            // Proceed if request is UPGRADE
-            log = this.getUpgrade(type, sentDateTime, requestSize);
-            if(!log.isEmpty()){
-                output.add(log);
-                continue;
-            }
+    /**
+     * Process the next request of a stream, its log is returned and not added to the output
+     * @param in tokens of the requests
+     * @return String : log of the request, empty if the type is unknown
+     */
+    public String process(FastReader in){
+        if(this.request().read(in) == null)
+            return "";
+        return this.process(this.request());
+    }
 
-            // Proceed if request is CHANGE
-            String abbreviation = !type.equals("CALC") ? requestInfo[3] : "";
-            
-            log = this.getChange(type, sentDateTime, abbreviation, requestSize);
-            if(!log.isEmpty()){
-                output.add(log);
+    /**
+     * Process the first (count) requests of a reusable buffer, in order
+     * @param requests
+     * @param results log of each request, empty if the type is unknown
+     * @param count
+     */
+    public void process(String[] requests, String[] results, int count){
+        if(count > requests.length || count > results.length)
+            throw new ArrayIndexOutOfBoundsException("Number of requests is out of bounds: " + count);
+
+        for(int request=0; request<count; request++)
+            results[request] = this.process(requests[request]);
+    }
+
+    /**
+     * Replay requests of the binary format, from the position to the limit of the buffer
+     * Logs are written as they are produced and not added to the output
+     * @param requests
+     * @param out log of each request, one per line
+     */
+    public void replay(ByteBuffer requests, FastWriter out){
+        ResponseEncoder response = new ResponseEncoder();
+        while(requests.remaining() >= BillingRequest.BYTES){
+            this.process(this.request().read(requests), response.clear());
+            response.writeTo(out);
+            out.newLine();
+        }
+    }
+
+    /**
+     * Process the first (count) decoded requests of a reusable buffer, in order
+     * Bursts of UPLOAD, DOWNLOAD and DELETE sent in the same minute compute the uptime once
+     * and the shutdown date only when the usage fee changes, each request is still accepted or rejected on its own
+     * @param requests
+     * @param count
+     * @param out log of each request, one per line
+     */
+    public void process(BillingRequest[] requests, int count, FastWriter out){
+        if(count > requests.length)
+            throw new ArrayIndexOutOfBoundsException("Number of requests is out of bounds: " + count);
+
+        ResponseEncoder response = new ResponseEncoder();
+        for(int request=0; request<count; request++){
+            this.process(requests[request], response.clear());
+            response.writeTo(out);
+            out.newLine();
+        }
+    }
+
+    /**
+     * Process every request of a stream, logs are written as they are produced and not added to the output
+     * @param in tokens of the requests
+     * @param out log of each request, one per line
+     */
+    public void processAll(FastReader in, FastWriter out){
+        ResponseEncoder response = new ResponseEncoder();
+        while(in.hasNext()){
+            if(this.request().read(in) == null)
                 continue;
-            }
+            this.process(this.request(), response.clear());
+            response.writeTo(out);
+            out.newLine();
         }
     }
 
+    /**
+     * @param request decoded request, not kept by the service
+     * @return String : log of the request
+     */
+    public String process(BillingRequest request){
+        if(this.response == null)
+            this.response = new ResponseEncoder();
+        this.process(request, this.response.clear());
+        return this.response.toString();
+    }
+
+    /**
+     * Process a decoded request and encode its log without creating Strings
+     * @param request decoded request, not kept by the service
+     * @param response the log of the request is appended to it
+     */
+    public void process(BillingRequest request, ResponseEncoder response){
+        BillingMetrics metrics = this.metrics;
+        if(metrics == null){
+            this.dispatch(request, response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        double instances = this.instances.totalInstances();
+        boolean hasShutdown = this.shutdownMinute != NONE;
+        this.outcome = BillingMetrics.Outcome.ACCEPTED;
+        this.dispatch(request, response);
+        metrics.record(request.getOpcode(), this.outcome, System.nanoTime() - start);
+        metrics.update(this.instances.totalInstances() - instances, (this.shutdownMinute != NONE ? 1 : 0) - (hasShutdown ? 1 : 0));
+    }
+
+    /**
+     * Measure the requests of the service, null to stop measuring
+     * @param metrics may be shared with other services
+     */
+    public void setMetrics(BillingMetrics metrics){
+        if(this.metrics != null)
+            this.metrics.update(-this.instances.totalInstances(), this.shutdownMinute != NONE ? -1 : 0);
+        if(metrics != null)
+            metrics.update(this.instances.totalInstances(), this.shutdownMinute != NONE ? 1 : 0);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Answer the request with the handler of its opcode
+     * @param request
+     * @param response the log of the request is appended to it
+     */
+    private void dispatch(BillingRequest request, ResponseEncoder response){
+        Opcode opcode = request.getOpcode();
+        response.label(opcode);
+        long sentMinute = opcode == Opcode.CALC ? NONE : request.getSentMinute();
+        currentMinute = sentMinute != NONE ? sentMinute : currentMinute;
+        if(opcode != Opcode.UPLOAD && opcode != Opcode.DOWNLOAD && opcode != Opcode.DELETE)
+            this.projectionMinute = NONE;
+
+        // Status is Usage Fee Overrun State
+        if(shutdownMinute != NONE && sentMinute != NONE && sentMinute > shutdownMinute
+             && opcode != Opcode.UPGRADE && opcode != Opcode.CHANGE){
+            this.outcome = BillingMetrics.Outcome.OVERRUN;
+            response.text("please increase usage fee limit");
+            return;
+        }
+
+        switch(opcode){
+            case UPLOAD:
+                this.getUpload(response, sentMinute, request.getAmount());
+                break;
+            case DOWNLOAD:
+                this.getDownload(response, sentMinute, request.getAmount());
+                break;
+            case DELETE:
+                this.getDelete(response, request.getAmount());
+                break;
+            case LAUNCH:
+                this.getLaunch(response, sentMinute, request.getAmount());
+                break;
+            case STOP:
+                this.getStop(response, sentMinute, request.getLaunchMinute(), request.getAmount());
+                break;
+            case CALC:
+                this.getCalc(response);
+                break;
+            case UPGRADE:
+                this.getUpgrade(response, sentMinute, request.getAmount());
+                break;
+            default:
+                this.getChange(response, sentMinute, request.getAbbreviation(), request.getAmount());
+        }
+    }
     
     /** 
      * Return the overall output to App.java
      * @return String[]
      */
     public String[] getOutput(){
+        if(output == null)
+            return new String[0];
         return output.toArray(new String[output.size()]);
     }
 
+    /** 
+     * Write the overall output, one log per line
+     * @param out
+     */
+    public void writeTo(FastWriter out){
+        if(output == null)
+            return;
+        for(String log : output)
+            out.writeAscii(log).newLine();
+    }
+
+    /**
+     * Servers are auto shut down at this minute unless a request moves it
+     * @return long : minutes since 1970-01-01 00:00, ShutdownScheduler.NONE if no instances are running
+     */
+    public long getProjectedShutdownMinute(){
+        return this.shutdownMinute;
+    }
+
+    /**
+     * @return double : storage space of the uploaded files that are not deleted
+     */
+    double getStorageSpace(){
+        return this.storageSpace;
+    }
+
     
     /** 
      * Check if the current request exceeds the user's limit
      * @param tempTransferAmt
      * @param tempStorageSpace
      * @param tempUsageFee
-     * @return String
+     * @return char : abbreviation of the exceeded limit, NO_ABBREVIATION if none
      */
-    private String getAbbreviation(double tempTransferAmt, double tempStorageSpace, double tempUsageFee){
+    private char getAbbreviation(double tempTransferAmt, double tempStorageSpace, double tempUsageFee){
         if(tempTransferAmt > myCCSPlan.getTransferAmountLimit())
-            return String.valueOf(CloudComputingServicePlan.TRN_AMT_LMT_ABBRE);
+            return CloudComputingServicePlan.TRN_AMT_LMT_ABBRE;
         if(tempStorageSpace > myCCSPlan.getStorageSpaceLimit())
-            return String.valueOf(CloudComputingServicePlan.STR_SPC_LMT_ABBRE);
+            return CloudComputingServicePlan.STR_SPC_LMT_ABBRE;
         if( tempUsageFee > myCCSPlan.getUsageFeeLimit())
-            return String.valueOf(CloudComputingServicePlan.USAGE_FEE_LMT_ABBRE);
+            return CloudComputingServicePlan.USAGE_FEE_LMT_ABBRE;
 
-        return "";
+        return NO_ABBREVIATION;
     }
 
     
     /** 
-     * @param type
-     * @param sentDateTime
+     * @param response the log is appended to it
+     * @param sentMinute minutes since 1970-01-01 00:00 the request is sent
      * @param fileSize 
-     * @return String
      */
-    private String getUpload(String type, LocalDateTime sentDateTime, Double fileSize){
-        if(!type.equals("UPLOAD") || fileSize == null)
-            return "";
-
+    private void getUpload(ResponseEncoder response, long sentMinute, double fileSize){
         // Compute the uptime of servers up to this date
-        this.uptimeSpent = computeUpTime(sentDateTime);
+        this.uptimeSpent = computeUpTime(sentMinute);
 
-        double tempTransferAmt = consumption.get(CloudComputingServicePlan.TRN_AMT_LMT_ABBRE) + fileSize;
-        double tempStorageSpace = consumption.get(CloudComputingServicePlan.STR_SPC_LMT_ABBRE) + fileSize;
+        double tempTransferAmt = this.transferAmount + fileSize;
+        double tempStorageSpace = this.storageSpace + fileSize;
 
         double transferUsageFee = (CloudComputingServicePlan.TRANSFER_FEE * (tempTransferAmt - CloudComputingServicePlan.TRN_AMT_FREE_TIER));
         double storageUsageFee = (CloudComputingServicePlan.STORAGE_FEE * (tempStorageSpace - CloudComputingServicePlan.STR_SPC_FREE_TIER));
-        double tempUsageFee = consumption.get(CloudComputingServicePlan.USAGE_FEE_LMT_ABBRE) + (transferUsageFee > 0 ? transferUsageFee : 0) + (storageUsageFee > 0 ? storageUsageFee : 0);
+        double tempUsageFee = this.usageFee + (transferUsageFee > 0 ? transferUsageFee : 0) + (storageUsageFee > 0 ? storageUsageFee : 0);
 
         // Check if this request will exceed the user's plan limits
-        String abbreviation = this.getAbbreviation(tempTransferAmt, tempStorageSpace, tempUsageFee);
-        if(!abbreviation.isEmpty())
-            return String.format("%s: %s", type, abbreviation);
+        char abbreviation = this.getAbbreviation(tempTransferAmt, tempStorageSpace, tempUsageFee);
+        if(abbreviation != NO_ABBREVIATION){
+            this.outcome = BillingMetrics.Outcome.LIMIT_EXCEEDED;
+            response.character(abbreviation);
+            return;
+        }
         
         // Add the transfer amount to user's consumed transfer amount, storage space and computed usage fee
-        consumption.put(CloudComputingServicePlan.TRN_AMT_LMT_ABBRE, tempTransferAmt);
-        consumption.put(CloudComputingServicePlan.STR_SPC_LMT_ABBRE, tempStorageSpace);
+        this.transferAmount = tempTransferAmt;
+        this.storageSpace = tempStorageSpace;
         peakStorageSpace = tempStorageSpace > peakStorageSpace ? tempStorageSpace : peakStorageSpace;
-        consumption.put(CloudComputingServicePlan.USAGE_FEE_LMT_ABBRE, tempUsageFee);
+        this.usageFee = tempUsageFee;
 
         // Get the expected shutdown date of running servers
-        double totalInstances = this.instances.values().stream().mapToDouble(Double::doubleValue).sum();
-        this.shutdownDateTime = getShutdownDateTime(sentDateTime, totalInstances, this.uptimeSpent);
+        this.shutdownMinute = projectShutdownMinute(sentMinute);
 
-        return String.format("%s: %s %s %s", 
-            type, 
-            this.doubleFormat.format(tempTransferAmt), 
-            this.doubleFormat.format(tempStorageSpace), 
-            this.shutdownDateTime == null? "-" : this.shutdownDateTime);
+        response.amount(tempTransferAmt, this.isRoundingDown).space()
+            .amount(tempStorageSpace, this.isRoundingDown).space();
+        this.writeShutdown(response, false, 'T');
     }
 
     
     /** 
-     * @param type
-     * @param sentDateTime
+     * @param response the log is appended to it
+     * @param sentMinute minutes since 1970-01-01 00:00 the request is sent
      * @param fileSize
-     * @return String
      */
-    private String getDownload(String type, LocalDateTime sentDateTime, Double fileSize){
-        if(!type.equals("DOWNLOAD") || fileSize == null)
-            return "";
-
+    private void getDownload(ResponseEncoder response, long sentMinute, double fileSize){
         // Compute the uptime of servers up to this date
-        this.uptimeSpent = computeUpTime(sentDateTime);
+        this.uptimeSpent = computeUpTime(sentMinute);
 
-        double tempTransferAmt = consumption.get(CloudComputingServicePlan.TRN_AMT_LMT_ABBRE) + fileSize;
-        double storageSpace = consumption.get(CloudComputingServicePlan.STR_SPC_LMT_ABBRE);
+        double tempTransferAmt = this.transferAmount + fileSize;
+        double storageSpace = this.storageSpace;
         double transferUsageFee = (CloudComputingServicePlan.TRANSFER_FEE * (tempTransferAmt - CloudComputingServicePlan.TRN_AMT_FREE_TIER));
-        double tempUsageFee = consumption.get(CloudComputingServicePlan.USAGE_FEE_LMT_ABBRE) + (transferUsageFee > 0 ? transferUsageFee : 0);
+        double tempUsageFee = this.usageFee + (transferUsageFee > 0 ? transferUsageFee : 0);
                 
         // Check if this request will exceed the user's plan limits
-        String abbreviation = this.getAbbreviation(tempTransferAmt, storageSpace, tempUsageFee);
-        if(!abbreviation.isEmpty())
-            return String.format("%s: %s", type, abbreviation);
+        char abbreviation = this.getAbbreviation(tempTransferAmt, storageSpace, tempUsageFee);
+        if(abbreviation != NO_ABBREVIATION){
+            this.outcome = BillingMetrics.Outcome.LIMIT_EXCEEDED;
+            response.character(abbreviation);
+            return;
+        }
         
-        if(fileSize > storageSpace)
-            return String.format("%s: %s", type, "no such files");
+        if(fileSize > storageSpace){
+            this.outcome = BillingMetrics.Outcome.INVALID;
+            response.text("no such files");
+            return;
+        }
         
         // Add the transfer amount to user's consumed transfer amount and computed usage fee
-        consumption.put(CloudComputingServicePlan.TRN_AMT_LMT_ABBRE, tempTransferAmt);
-        consumption.put(CloudComputingServicePlan.USAGE_FEE_LMT_ABBRE, tempUsageFee);
+        this.transferAmount = tempTransferAmt;
+        this.usageFee = tempUsageFee;
 
         // Get the expected shutdown date of running servers
-        double totalInstances = this.instances.values().stream().mapToDouble(Double::doubleValue).sum();
-        this.shutdownDateTime = getShutdownDateTime(sentDateTime, totalInstances, this.uptimeSpent);
+        this.shutdownMinute = projectShutdownMinute(sentMinute);
         
-        return String.format("%s: %s %s", 
-            type, 
-            this.doubleFormat.format(tempTransferAmt), 
-            this.shutdownDateTime == null? "-" : this.shutdownDateTime);
+        response.amount(tempTransferAmt, this.isRoundingDown).space();
+        this.writeShutdown(response, false, 'T');
     }
 
     
     /** 
-     * @param type
+     * @param response the log is appended to it
      * @param fileSize
-     * @return String
      */
-    private String getDelete(String type, Double fileSize){
-        if(!type.equals("DELETE") || fileSize == null)
-            return "";
-
-        if(fileSize > consumption.get(CloudComputingServicePlan.STR_SPC_LMT_ABBRE))
-            return String.format("%s: %s", type, "no such files");
+    private void getDelete(ResponseEncoder response, double fileSize){
+        if(fileSize > this.storageSpace){
+            this.outcome = BillingMetrics.Outcome.INVALID;
+            response.text("no such files");
+            return;
+        }
         
         // Add the user's consumed storage space
-        consumption.put(CloudComputingServicePlan.STR_SPC_LMT_ABBRE, consumption.get(CloudComputingServicePlan.STR_SPC_LMT_ABBRE) - fileSize);
+        this.storageSpace = this.storageSpace - fileSize;
         
-        return String.format("%s: %s %s ", 
-            type, 
-            this.doubleFormat.format(consumption.get(CloudComputingServicePlan.STR_SPC_LMT_ABBRE)), 
-            this.shutdownDateTime == null? "-" : this.shutdownDateTime);
+        response.amount(this.storageSpace, this.isRoundingDown).space();
+        this.writeShutdown(response, false, 'T');
+        response.space();
     }
 
     
     /** 
-     * @param type
-     * @param sentDateTime
+     * @param response the log is appended to it
+     * @param sentMinute minutes since 1970-01-01 00:00 the request is sent
      * @param instances
-     * @return String
      */
-    private String getLaunch(String type, LocalDateTime sentDateTime, Double instances){
-        if(!type.equals("LAUNCH") || sentDateTime == null || instances == null)
-            return "";
-
+    private void getLaunch(ResponseEncoder response, long sentMinute, double instances){
         // Compute the uptime of servers up to this date
-        this.uptimeSpent = computeUpTime(sentDateTime);
+        this.uptimeSpent = computeUpTime(sentMinute);
 
         // Add the request to running servers
-        this.instances.put(sentDateTime, instances);
+        this.instances.launch(sentMinute, instances);
         
         // Get the expected shutdown date of running servers
-        double totalInstances = this.instances.values().stream().mapToDouble(Double::doubleValue).sum();
-        this.shutdownDateTime = getShutdownDateTime(sentDateTime, totalInstances, this.uptimeSpent);
+        double totalInstances = this.instances.totalInstances();
+        this.shutdownMinute = getShutdownMinute(sentMinute, totalInstances, this.uptimeSpent);
         
         // Check if the shutdown date is next month
-        boolean isNextMonth = checkIfNextMonth(this.currentDateTime, shutdownDateTime);
+        boolean isNextMonth = checkIfNextMonth(this.currentMinute, shutdownMinute);
 
-        return String.format("%s: %s %s ", 
-            type, 
-            this.doubleFormat.format(totalInstances),
-            isNextMonth ? "-" : this.shutdownDateTime.toString().replace("T", " "));
+        response.amount(totalInstances, this.isRoundingDown).space();
+        this.writeShutdown(response, isNextMonth, ' ');
+        response.space();
     }
 
     
     /** 
-     * @param type
-     * @param sentDateTime
-     * @param launchDateTime
+     * @param response the log is appended to it
+     * @param sentMinute minutes since 1970-01-01 00:00 the request is sent
+     * @param launchMinute minutes since 1970-01-01 00:00 of the instances to stop
      * @param fileSize
-     * @return String
      */
-    private String getStop(String type, LocalDateTime sentDateTime, LocalDateTime launchDateTime, Double fileSize){
-        if(!type.equals("STOP") || sentDateTime == null || launchDateTime == null || fileSize == null)
-            return "";
-
-        if(!this.instances.containsKey(launchDateTime) || this.instances.get(launchDateTime) < fileSize)
-            return String.format("%s: %s", type, "please correctly specify the instances");
+    private void getStop(ResponseEncoder response, long sentMinute, long launchMinute, double fileSize){
+        if(!this.instances.contains(launchMinute) || this.instances.get(launchMinute) < fileSize){
+            this.outcome = BillingMetrics.Outcome.INVALID;
+            response.text("please correctly specify the instances");
+            return;
+        }
         
 
-        this.uptimeSpent = computeUpTime(sentDateTime);
+        this.uptimeSpent = computeUpTime(sentMinute);
 
         // Deduct the request to running servers
-        // If the running server for the specified instance is 0, remove the instance.
-        this.instances.put(launchDateTime, this.instances.get(launchDateTime) - fileSize);
-        this.instances.remove(launchDateTime, 0);
+        // The launch stays with 0 running servers if every instance is stopped
+        this.instances.stop(launchMinute, fileSize);
 
         // Get the expected shutdown date of running servers
-        double totalInstances = this.instances.values().stream().mapToDouble(Double::doubleValue).sum();
-        this.shutdownDateTime = getShutdownDateTime(sentDateTime, totalInstances, this.uptimeSpent);
+        double totalInstances = this.instances.totalInstances();
+        this.shutdownMinute = getShutdownMinute(sentMinute, totalInstances, this.uptimeSpent);
         
-        return String.format("%s: %s %s ", 
-            type, 
-            this.doubleFormat.format(totalInstances),
-            this.shutdownDateTime.toString().replace("T", " "));
+        response.amount(totalInstances, this.isRoundingDown).space();
+        this.writeShutdown(response, false, ' ');
+        response.space();
     }
 
     
     /** 
-     * @param type
-     * @return String
+     * @param response the log is appended to it
      */
-    private String getCalc(String type){
-        if(!type.equals("CALC"))
-            return "";
+    private void getCalc(ResponseEncoder response){
+        if(currentMinute == NONE)
+            throw new IllegalStateException("CALC before any dated request");
 
         // Check if the shutdown date is next month
-        boolean isNextMonth = checkIfNextMonth(currentDateTime, shutdownDateTime);
+        boolean isNextMonth = checkIfNextMonth(currentMinute, shutdownMinute);
         
         double usageFee = 0.0;
         // Compute the overall usage fee including the running servers
         if(isNextMonth){
-            LocalDateTime endOfMonth = currentDateTime.plusMonths(1).withDayOfMonth(1).withHour(0).withMinute(0).minusMinutes(1);
-            usageFee = computeUsageFee(endOfMonth) + consumption.get(CloudComputingServicePlan.USAGE_FEE_LMT_ABBRE);
-        }else if (shutdownDateTime != null){
-            usageFee = computeUsageFee(shutdownDateTime.minusMinutes(1)) + consumption.get(CloudComputingServicePlan.USAGE_FEE_LMT_ABBRE);
+            long endOfMonth = EpochMinutes.monthStart(EpochMinutes.monthIndex(currentMinute) + 1) - 1;
+            usageFee = computeUsageFee(endOfMonth) + this.usageFee;
+        }else if (shutdownMinute != NONE){
+            usageFee = computeUsageFee(shutdownMinute - 1) + this.usageFee;
             this.instances.clear();
         }else{
-            usageFee = consumption.get(CloudComputingServicePlan.USAGE_FEE_LMT_ABBRE);
+            usageFee = this.usageFee;
         }
 
         // add this log to output
-        String outputCalc = String.format("%s: %s %s ", 
-            type, 
-            this.doubleFormat.format(usageFee),
-            isNextMonth ? this.shutdownDateTime.toString().replace("T", " ") : "-");
+        response.amount(usageFee, this.isRoundingDown).space();
+        this.writeShutdown(response, !isNextMonth, ' ');
+        response.space();
         
         // Reset the transfer and usage fee consumption, peak storage space, shutdown date and current total uptime
-        consumption.put(CloudComputingServicePlan.TRN_AMT_LMT_ABBRE, 0.0);
-        consumption.put(CloudComputingServicePlan.USAGE_FEE_LMT_ABBRE, 0.0);
-        peakStorageSpace = consumption.get(CloudComputingServicePlan.STR_SPC_LMT_ABBRE);
-        this.shutdownDateTime = null;
+        this.transferAmount = 0.0;
+        this.usageFee = 0.0;
+        peakStorageSpace = this.storageSpace;
+        this.shutdownMinute = NONE;
         this.currentTotalUptime = 0.0;
         // set the current DateTime to next date in preparation for new requests next month
-        currentDateTime = currentDateTime.plusMonths(1);
-
-        return outputCalc;
+        currentMinute = EpochMinutes.plusMonths(currentMinute, 1);
     }
 
     
     /** 
-     * @param type
-     * @param sentDateTime
+     * @param response the log is appended to it
+     * @param sentMinute minutes since 1970-01-01 00:00 the request is sent
      * @param maxLimitSize
-     * @return String
      */
-    private String getUpgrade(String type, LocalDateTime sentDateTime, Double maxLimitSize){
-        if(!type.equals("UPGRADE")  || sentDateTime == null || maxLimitSize == null)
-            return "";
-        
-        if(myCCSPlan.isPaidUser() && myCCSPlan.getUsageFeeLimit() > maxLimitSize)
-            return String.format("%s: %s ", type, "invalid value");
+    private void getUpgrade(ResponseEncoder response, long sentMinute, double maxLimitSize){
+        if(myCCSPlan.isPaidUser() && myCCSPlan.getUsageFeeLimit() > maxLimitSize){
+            this.outcome = BillingMetrics.Outcome.INVALID;
+            response.text("invalid value ");
+            return;
+        }
 
         
         if(myCCSPlan.isPaidUser() && myCCSPlan.getUsageFeeLimit() <= maxLimitSize){
             myCCSPlan.upgradePlan(maxLimitSize);
-            return String.format("%s: %s ", type, "accepted");
+            response.text("accepted ");
+            return;
         } 
 
         // Get the uptime if running servers up to this date
-        uptimeSpent = computeUpTime(sentDateTime);
+        uptimeSpent = computeUpTime(sentMinute);
         
         myCCSPlan.newUpgradePlan(maxLimitSize);
 
         // Get the expected shutdown date of running servers after upgrading the plan
-        double totalInstances = this.instances.values().stream().mapToDouble(Double::doubleValue).sum();
-        this.shutdownDateTime = getShutdownDateTime(sentDateTime, totalInstances, this.uptimeSpent);
+        double totalInstances = this.instances.totalInstances();
+        this.shutdownMinute = getShutdownMinute(sentMinute, totalInstances, this.uptimeSpent);
 
-        return String.format("%s: %s", 
-            type, 
-            this.shutdownDateTime == null ? "-" : this.shutdownDateTime.toString().replace("T", " "));
+        this.writeShutdown(response, false, ' ');
     }
 
     
     /** 
-     * @param type
-     * @param sentDateTime
+     * @param response the log is appended to it
+     * @param sentMinute minutes since 1970-01-01 00:00 the request is sent
      * @param abbreviation
      * @param limit
-     * @return String
      */
-    private String getChange(String type, LocalDateTime sentDateTime, String abbreviation, Double limit){
-        if(!type.equals("CHANGE")  || sentDateTime == null || abbreviation.isEmpty() || limit == null)
-            return "";
-        
-        if(!myCCSPlan.isPaidUser())
-            return String.format("%s: %s ", type, "free plan");
+    private void getChange(ResponseEncoder response, long sentMinute, char abbreviation, double limit){
+        if(!myCCSPlan.isPaidUser()){
+            this.outcome = BillingMetrics.Outcome.INVALID;
+            response.text("free plan ");
+            return;
+        }
 
         // limit is between minimum and maximum value of that limit inclusive
         // current transfer amount, storage space, and usage fee >=  limit
-        if((limit >= myCCSPlan.getMinimumLimits(abbreviation.charAt(0)) && limit <= myCCSPlan.getMaximumLimits(abbreviation.charAt(0)))
-            && limit >= consumption.get(abbreviation.charAt(0))){
+        if((limit >= myCCSPlan.getMinimumLimits(abbreviation) && limit <= myCCSPlan.getMaximumLimits(abbreviation))
+            && limit >= this.getConsumption(abbreviation)){
 
-            myCCSPlan.setLimit(abbreviation.charAt(0), limit);
+            myCCSPlan.setLimit(abbreviation, limit);
 
             // If shutdown is before the request date, get the new shutdown date
-            if(this.shutdownDateTime != null && sentDateTime.isBefore(shutdownDateTime)){
-                uptimeSpent = computeUpTime(sentDateTime);
-                double totalInstances = this.instances.values().stream().mapToDouble(Double::doubleValue).sum();
-                this.shutdownDateTime = getShutdownDateTime(sentDateTime, totalInstances, uptimeSpent);
-            }else if(this.shutdownDateTime != null){
+            if(this.shutdownMinute != NONE && sentMinute < shutdownMinute){
+                uptimeSpent = computeUpTime(sentMinute);
+                double totalInstances = this.instances.totalInstances();
+                this.shutdownMinute = getShutdownMinute(sentMinute, totalInstances, uptimeSpent);
+            }else if(this.shutdownMinute != NONE){
                 // Else If shutdown is equal or after the request date,
                 // And shudown date is not null, get the current total uptime from base on the shutdown date
-                this.currentTotalUptime = computeUpTime(this.shutdownDateTime);
+                this.currentTotalUptime = computeUpTime(this.shutdownMinute);
                 // remove running servers since servers already shutdown at the time of request
                 this.instances.clear();
-                this.shutdownDateTime = null;
+                this.shutdownMinute = NONE;
             }
             
-            return String.format("%s: %s", 
-                type, 
-                this.shutdownDateTime == null ? "-" : this.shutdownDateTime.toString().replace("T", " "));
+            this.writeShutdown(response, false, ' ');
+            return;
+        }
+
+        this.outcome = BillingMetrics.Outcome.INVALID;
+        response.text("invalid value");
+    }
+
+    /**
+     * Project CHANGE u (limit) sent at the given minute followed by CALC, for each candidate usage fee limit
+     * The same formulas as CHANGE and CALC are used but the service is left as it is
+     * @param sentMinute minutes since 1970-01-01 00:00 the CHANGE would be sent
+     * @param usageFeeLimits candidate usage fee limits
+     * @param shutdownMinutes projected shutdown minute of each candidate, ShutdownScheduler.NONE if no servers would run
+     * @param fees projected CALC usage fee of each candidate, NaN if CHANGE would reject the limit
+     * @param count number of candidates
+     */
+    public void projectUsageFeeLimits(long sentMinute, double[] usageFeeLimits, long[] shutdownMinutes, double[] fees, int count){
+        char abbreviation = CloudComputingServicePlan.USAGE_FEE_LMT_ABBRE;
+        double minimumLimit = myCCSPlan.isPaidUser() ? Math.max(myCCSPlan.getMinimumLimits(abbreviation), this.usageFee) : Double.POSITIVE_INFINITY;
+        double maximumLimit = myCCSPlan.getMaximumLimits(abbreviation);
+
+        // Without a shutdown ahead the limit does not move anything, servers are down or were never launched
+        boolean isRunning = this.shutdownMinute != NONE && sentMinute < this.shutdownMinute;
+        double uptime = isRunning ? computeUpTime(sentMinute) : 0;
+        double totalInstances = this.instances.totalInstances();
+        long monthIndex = EpochMinutes.monthIndex(sentMinute);
+        // Fee of a shutdown after this month, the servers are charged up to the end of the month
+        double monthFee = isRunning
+            ? getInstanceFee(this.currentTotalUptime + computeUpTime(EpochMinutes.monthStart(monthIndex + 1) - 1) - CloudComputingServicePlan.VIRTUAL_SERVER_FREE_TIER) + this.usageFee
+            : this.usageFee;
+
+        for(int candidate=0; candidate<count; candidate++){
+            double limit = usageFeeLimits[candidate];
+            if(!(limit >= minimumLimit && limit <= maximumLimit)){
+                shutdownMinutes[candidate] = NONE;
+                fees[candidate] = Double.NaN;
+                continue;
+            }
+            if(!isRunning){
+                shutdownMinutes[candidate] = NONE;
+                fees[candidate] = this.usageFee;
+                continue;
+            }
+
+            long shutdownMinute = getShutdownMinute(sentMinute, totalInstances, uptime, limit);
+            shutdownMinutes[candidate] = shutdownMinute;
+            fees[candidate] = shutdownMinute == NONE ? this.usageFee
+                : EpochMinutes.monthIndex(shutdownMinute) > monthIndex ? monthFee
+                : getInstanceFee(this.currentTotalUptime + computeUpTime(shutdownMinute - 1) - CloudComputingServicePlan.VIRTUAL_SERVER_FREE_TIER) + this.usageFee;
         }
+    }
 
-        return String.format("%s: %s", type, "invalid value");
+    /**
+     * @return int : bytes of the service state in a snapshot
+     */
+    int stateBytes(){
+        return CloudComputingServicePlan.STATE_BYTES + this.instances.stateBytes() + Double.BYTES * 6 + Long.BYTES * 2 + 1;
+    }
+
+    /**
+     * Write the plan, consumption, running instances and shutdown date to a snapshot
+     * The accumulated output is not part of the state
+     * @param buffer at least stateBytes() remaining
+     */
+    void writeState(ByteBuffer buffer){
+        myCCSPlan.writeState(buffer);
+        this.instances.writeState(buffer);
+        buffer.putDouble(this.transferAmount).putDouble(this.storageSpace).putDouble(this.usageFee)
+            .putDouble(this.peakStorageSpace).putDouble(this.uptimeSpent).putDouble(this.currentTotalUptime)
+            .putLong(this.shutdownMinute).putLong(this.currentMinute)
+            .put((byte) (this.isRoundingDown ? 1 : 0));
+    }
+
+    /**
+     * Replace the state with the one of a snapshot written by writeState
+     * @param buffer
+     */
+    void readState(ByteBuffer buffer){
+        myCCSPlan.readState(buffer);
+        this.instances.readState(buffer);
+        this.transferAmount = buffer.getDouble();
+        this.storageSpace = buffer.getDouble();
+        this.usageFee = buffer.getDouble();
+        this.peakStorageSpace = buffer.getDouble();
+        this.uptimeSpent = buffer.getDouble();
+        this.currentTotalUptime = buffer.getDouble();
+        this.shutdownMinute = buffer.getLong();
+        this.currentMinute = buffer.getLong();
+        this.isRoundingDown = buffer.get() != 0;
+        this.projectionMinute = NONE;
     }
 
     /** ******************************
@@ -437,41 +677,66 @@ public class CloudComputingService {
      * *******************************
      */
 
+    /**
+     * @return BillingRequest : request reused by the line and token readers
+     */
+    private BillingRequest request(){
+        if(this.request == null)
+            this.request = new BillingRequest();
+        return this.request;
+    }
+
     /** 
      * Compute the current total uptime until the given date
-     * @param sentDateTime
+     * @param sentMinute minutes since 1970-01-01 00:00 the request is sent
      * @return Double
      */
-    private Double computeUpTime(LocalDateTime sentDateTime){
-
-        if(sentDateTime == null)
-            return 0.0;
-
-        double uptime = 0.0;
+    private double computeUpTime(long sentMinute){
+        return this.instances.uptime(sentMinute);
+    }
 
-        for (Map.Entry<LocalDateTime, Double> entry : this.instances.entrySet()) {
-            boolean isNextMonth = checkIfNextMonth(entry.getKey(), sentDateTime);
-            Duration duration = Duration.between(isNextMonth ? sentDateTime.withDayOfMonth(1).withHour(0).withMinute(0).minusMinutes(1) : entry.getKey() , sentDateTime);
-            uptime += (duration.toMinutes() * entry.getValue());
-        }
+    
+    /** 
+     * Shutdown date after an UPLOAD or DOWNLOAD, the uptime spent already computed
+     * Only the usage fee changes between storage requests of the same minute, the last projection is kept while it is unchanged
+     * @param sentMinute minutes since 1970-01-01 00:00 the request is sent
+     * @return long : minutes since 1970-01-01 00:00, NONE if no instances are running
+     */
+    private long projectShutdownMinute(long sentMinute){
+        if(sentMinute == this.projectionMinute && this.usageFee == this.projectionUsageFee)
+            return this.shutdownMinute;
+        long shutdownMinute = getShutdownMinute(sentMinute, this.instances.totalInstances(), this.uptimeSpent);
+        this.projectionMinute = sentMinute;
+        this.projectionUsageFee = this.usageFee;
+        return shutdownMinute;
+    }
 
-        return uptime;
-        
+    
+    /** 
+     * @param sentMinute minutes since 1970-01-01 00:00 the request is sent
+     * @param totalInstances
+     * @param spentUptime
+     * @return long : minutes since 1970-01-01 00:00, NONE if no instances are running
+     */
+    private long getShutdownMinute(long sentMinute, double totalInstances, double spentUptime){
+        return getShutdownMinute(sentMinute, totalInstances, spentUptime, myCCSPlan.getUsageFeeLimit());
     }
 
     
     /** 
-     * @param sentDateTime
+     * @param sentMinute minutes since 1970-01-01 00:00 the request is sent
      * @param totalInstances
      * @param spentUptime
-     * @return LocalDateTime
+     * @param usageFeeLimit
+     * @return long : minutes since 1970-01-01 00:00, NONE if no instances are running
      */
-    private LocalDateTime getShutdownDateTime(LocalDateTime sentDateTime, double totalInstances, double spentUptime){
+    private long getShutdownMinute(long sentMinute, double totalInstances, double spentUptime, double usageFeeLimit){
 
-        if(this.instances.isEmpty())
-            return null;
+        // Nothing to shut down if no instances were launched or every instance is stopped
+        if(totalInstances <= 0)
+            return NONE;
 
-        double minutesToShutdown = ((myCCSPlan.getUsageFeeLimit() - consumption.get(CloudComputingServicePlan.USAGE_FEE_LMT_ABBRE)) // deduct usage fee limit to current usafe fee
+        double minutesToShutdown = ((usageFeeLimit - this.usageFee) // deduct usage fee limit to current usafe fee
             / CloudComputingServicePlan.INSTANCE_FEE // convert usage fee limit yen to hours
             * 60 // convert hours to minutes
             + CloudComputingServicePlan.VIRTUAL_SERVER_FREE_TIER // add the free tier of virtual server
@@ -480,7 +745,7 @@ public class CloudComputingService {
             / totalInstances // divide with the total virtual servers
             ;
         
-        return sentDateTime.plusMinutes(Double.valueOf(minutesToShutdown).longValue()+1);
+        return EpochMinutes.plusMinutes(sentMinute, (long) minutesToShutdown + 1);
         
     }
 
@@ -488,16 +753,43 @@ public class CloudComputingService {
     /** 
      * Compute the usage fee of running virtual servers
      * This method is only executed during CALC request
-     * @param currenDateTime
+     * @param minute
      * @return double
      */
-    private double computeUsageFee(LocalDateTime currenDateTime){
-        doubleFormat.setRoundingMode(RoundingMode.DOWN);
+    private double computeUsageFee(long minute){
+        // Amounts are rounded down from now on
+        this.isRoundingDown = true;
 
-        uptimeSpent = this.currentTotalUptime + computeUpTime(currenDateTime) - CloudComputingServicePlan.VIRTUAL_SERVER_FREE_TIER; // in minutes
-        String uptimeInHours = doubleFormat.format((uptimeSpent > 0 ? uptimeSpent : 0) / 60);
+        uptimeSpent = this.currentTotalUptime + computeUpTime(minute) - CloudComputingServicePlan.VIRTUAL_SERVER_FREE_TIER; // in minutes
+        return getInstanceFee(uptimeSpent);
+    }
+
+    
+    /** 
+     * @param uptimeSpent charged uptime in minutes, the free tier already deducted
+     * @return double : usage fee of the virtual servers
+     */
+    private static double getInstanceFee(double uptimeSpent){
+        // Only whole hours are charged
+        double uptimeInHours = Math.floor((uptimeSpent > 0 ? uptimeSpent : 0) / 60);
         
-        return (CloudComputingServicePlan.INSTANCE_FEE * Double.valueOf(uptimeInHours));
+        return (CloudComputingServicePlan.INSTANCE_FEE * uptimeInHours);
+    }
+
+    
+    /** 
+     * @param abbreviation
+     * @return double : consumed amount of the limit
+     */
+    private double getConsumption(char abbreviation){
+        switch(abbreviation){
+            case CloudComputingServicePlan.TRN_AMT_LMT_ABBRE:
+                return this.transferAmount;
+            case CloudComputingServicePlan.STR_SPC_LMT_ABBRE:
+                return this.storageSpace;
+            default:
+                return this.usageFee;
+        }
     }
 
     
@@ -506,8 +798,22 @@ public class CloudComputingService {
      * @param to
      * @return boolean
      */
-    private boolean checkIfNextMonth(LocalDateTime from, LocalDateTime to){
-        return from == null || to == null ? false : from.getYear() < to.getYear() || (from.getYear() == to.getYear() && from.getMonthValue() < to.getMonthValue());
+    private boolean checkIfNextMonth(long from, long to){
+        return from == NONE || to == NONE ? false : EpochMinutes.monthIndex(from) < EpochMinutes.monthIndex(to);
+    }
+
+    
+    /** 
+     * Write the shutdown date, or "-" if there is none or if it is hidden
+     * @param response
+     * @param isHidden
+     * @param separator separator between the date and the time, 'T' or ' '
+     */
+    private void writeShutdown(ResponseEncoder response, boolean isHidden, char separator){
+        if(isHidden || this.shutdownMinute == NONE)
+            response.character('-');
+        else
+            response.dateTime(this.shutdownMinute, separator);
     }
     
 }
@@ -1,7 +1,6 @@
 package track;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
 
 public class CloudComputingServicePlan {
     private static CloudComputingServicePlan ccsLimits = new CloudComputingServicePlan();
@@ -16,37 +15,35 @@ public class CloudComputingServicePlan {
     public static final double STORAGE_FEE = Double.valueOf(1) / Double.valueOf(1000000000);
     public static final double INSTANCE_FEE = 100;
 
+    // Limits of transfer amount, storage space and usage fee, in the order of index(abbreviation)
+    private static final double[] MINIMUM_LIMITS = {1.0, 1.0, 100.0};
+    // Bytes of the plan in a snapshot
+    static final int STATE_BYTES = 1 + 3 * 2 * Double.BYTES;
+
     private boolean isPaidPlanUser = false;
-    private Map<Character,Double> limits ;
-    private Map<Character,Double> minimumLimits ;
-    private Map<Character,Double> maximumLimits ;
+    private final double[] limits = {TRN_AMT_FREE_TIER, STR_SPC_FREE_TIER, USAGE_FEE_FREE_TIER};
+    private final double[] maximumLimits = {100000000000000.0, 100000000000000.0, 100.0};
 
     private CloudComputingServicePlan(){
-        this.limits = new HashMap<Character,Double>();
-        this.limits.put(TRN_AMT_LMT_ABBRE, TRN_AMT_FREE_TIER);
-        this.limits.put(STR_SPC_LMT_ABBRE, STR_SPC_FREE_TIER);
-        this.limits.put(USAGE_FEE_LMT_ABBRE, USAGE_FEE_FREE_TIER);
-
-        this.minimumLimits = new HashMap<Character,Double>();
-        this.minimumLimits.put(TRN_AMT_LMT_ABBRE, 1.0);
-        this.minimumLimits.put(STR_SPC_LMT_ABBRE, 1.0);
-        this.minimumLimits.put(USAGE_FEE_LMT_ABBRE, 100.0);
-
-        this.maximumLimits = new HashMap<Character,Double>();
-        this.maximumLimits.put(TRN_AMT_LMT_ABBRE, 100000000000000.0);
-        this.maximumLimits.put(STR_SPC_LMT_ABBRE, 100000000000000.0);
-        this.maximumLimits.put(USAGE_FEE_LMT_ABBRE, 100.0);
     }
 
     
     /** 
-     * Get the current instance of CloudComputingServicePlan
+     * Get the current instance of CloudComputingServicePlan shared by the whole process
      * @return CloudComputingServicePlan
      */
     public static CloudComputingServicePlan getPlan(){
         return ccsLimits;
     }
 
+    /** 
+     * Create a new Free Tier plan owned by a single account
+     * @return CloudComputingServicePlan
+     */
+    public static CloudComputingServicePlan newPlan(){
+        return new CloudComputingServicePlan();
+    }
+
     
     /** 
      * Check if user has free plan or paid plan
@@ -62,10 +59,10 @@ public class CloudComputingServicePlan {
      * @param maxLimitSize
      */
     public void newUpgradePlan(double maxLimitSize){
-        this.limits.put(TRN_AMT_LMT_ABBRE, 100000000000.0);
-        this.limits.put(STR_SPC_LMT_ABBRE, 100000000000.0);
-        this.limits.put(USAGE_FEE_LMT_ABBRE, 10000.0);
-        this.maximumLimits.put(USAGE_FEE_LMT_ABBRE, maxLimitSize);
+        this.limits[index(TRN_AMT_LMT_ABBRE)] = 100000000000.0;
+        this.limits[index(STR_SPC_LMT_ABBRE)] = 100000000000.0;
+        this.limits[index(USAGE_FEE_LMT_ABBRE)] = 10000.0;
+        this.maximumLimits[index(USAGE_FEE_LMT_ABBRE)] = maxLimitSize;
         this.isPaidPlanUser = true;
     }
 
@@ -74,7 +71,7 @@ public class CloudComputingServicePlan {
      * @param maxLimitSize
      */
     public void upgradePlan(double maxLimitSize){
-        this.maximumLimits.put(USAGE_FEE_LMT_ABBRE, maxLimitSize);
+        this.maximumLimits[index(USAGE_FEE_LMT_ABBRE)] = maxLimitSize;
     }
 
     
@@ -83,7 +80,7 @@ public class CloudComputingServicePlan {
      * @return double
      */
     public double getTransferAmountLimit(){
-        return this.limits.get(TRN_AMT_LMT_ABBRE);
+        return this.limits[index(TRN_AMT_LMT_ABBRE)];
     }
 
     /** 
@@ -91,7 +88,7 @@ public class CloudComputingServicePlan {
      * @return double
      */
     public double getStorageSpaceLimit(){
-        return this.limits.get(STR_SPC_LMT_ABBRE);
+        return this.limits[index(STR_SPC_LMT_ABBRE)];
     }
 
     /** 
@@ -99,7 +96,7 @@ public class CloudComputingServicePlan {
      * @return double
      */
     public double getUsageFeeLimit(){
-        return this.limits.get(USAGE_FEE_LMT_ABBRE);
+        return this.limits[index(USAGE_FEE_LMT_ABBRE)];
     }
 
     /** 
@@ -108,7 +105,7 @@ public class CloudComputingServicePlan {
      * @return double
      */
     public double getLimits(char abbreviation){
-        return this.limits.get(abbreviation);
+        return this.limits[index(abbreviation)];
     }
 
     /** 
@@ -117,7 +114,7 @@ public class CloudComputingServicePlan {
      * @return double
      */
     public double getMinimumLimits(char abbreviation){
-        return this.minimumLimits.get(abbreviation);
+        return MINIMUM_LIMITS[index(abbreviation)];
     }
 
     /** 
@@ -126,7 +123,7 @@ public class CloudComputingServicePlan {
      * @return double
      */
     public double getMaximumLimits(char abbreviation){
-        return this.maximumLimits.get(abbreviation);
+        return this.maximumLimits[index(abbreviation)];
     }
     
     /** 
@@ -135,6 +132,45 @@ public class CloudComputingServicePlan {
      * @param limitAmount
      */
     public void setLimit(char abbreviation, double limitAmount){
-        this.limits.put(abbreviation, limitAmount);
+        this.limits[index(abbreviation)] = limitAmount;
+    }
+
+    /** 
+     * Write the plan to a snapshot
+     * @param buffer at least STATE_BYTES remaining
+     */
+    void writeState(ByteBuffer buffer){
+        buffer.put((byte) (this.isPaidPlanUser ? 1 : 0));
+        for(int index=0; index<this.limits.length; index++)
+            buffer.putDouble(this.limits[index]).putDouble(this.maximumLimits[index]);
+    }
+
+    /** 
+     * Restore the plan from a snapshot
+     * @param buffer
+     */
+    void readState(ByteBuffer buffer){
+        this.isPaidPlanUser = buffer.get() != 0;
+        for(int index=0; index<this.limits.length; index++){
+            this.limits[index] = buffer.getDouble();
+            this.maximumLimits[index] = buffer.getDouble();
+        }
+    }
+
+    /** 
+     * @param abbreviation
+     * @return int : index of the limit in the limit arrays
+     */
+    private static int index(char abbreviation){
+        switch(abbreviation){
+            case TRN_AMT_LMT_ABBRE:
+                return 0;
+            case STR_SPC_LMT_ABBRE:
+                return 1;
+            case USAGE_FEE_LMT_ABBRE:
+                return 2;
+            default:
+                throw new IllegalArgumentException("Unknown limit abbreviation: " + abbreviation);
+        }
     }
 }
@@ -0,0 +1,51 @@
+package track;
+
+public class ColorCounter {
+    private final int[] frequencies;
+    private final int[] touchedColors;
+    private int touchedSize = 0;
+    private int mostFrequentColor = -1;
+    private int maxFrequency = 0;
+
+    /**
+     * @param paletteSize number of distinct colors, colors are 0 ... paletteSize-1
+     */
+    public ColorCounter(int paletteSize){
+        this.frequencies = new int[paletteSize];
+        this.touchedColors = new int[paletteSize];
+    }
+
+    /**
+     * Add the color of one adjacent point
+     * The most frequent color is kept up to date, the smallest color wins on ties
+     * @param color
+     */
+    public void add(int color){
+        int frequency = ++this.frequencies[color];
+        if(frequency == 1)
+            this.touchedColors[this.touchedSize++] = color;
+
+        if(frequency > this.maxFrequency || (frequency == this.maxFrequency && color < this.mostFrequentColor)){
+            this.maxFrequency = frequency;
+            this.mostFrequentColor = color;
+        }
+    }
+
+    /**
+     * @return int : most frequent color added since the last clear, -1 if none
+     */
+    public int mostFrequent(){
+        return this.mostFrequentColor;
+    }
+
+    /**
+     * Reset only the colors touched since the last clear
+     */
+    public void clear(){
+        for(int index=0; index<this.touchedSize; index++)
+            this.frequencies[this.touchedColors[index]] = 0;
+        this.touchedSize = 0;
+        this.mostFrequentColor = -1;
+        this.maxFrequency = 0;
+    }
+}
@@ -0,0 +1,392 @@
+package track;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class ColorDynamics extends SynchronousDynamics<int[]> {
+    private final RoadGraph roads;
+    // palette[id] is the original color of color id, ids keep the order of the colors
+    private final int[] palette;
+    private final ColorCounter counter;
+    // Degree balanced ranges of points updated in parallel, null if sequential
+    private final ForkJoinPool pool;
+    private final RangeStep[] ranges;
+    private final ParallelStep parallelStep;
+    private int[] currentColors;
+    private int[] nextColors;
+
+    // Incremental mode: only the adjacent points of the points changed on the last time are recomputed
+    // The frontier is used once the adjacent points of the changed points are less than 1/FRONTIER_RATIO of all
+    public static final int FRONTIER_RATIO = 8;
+    private ColorHistograms histograms;
+    private int[] changedPoints;
+    private int changedSize;
+    private int[] dirtyPoints;
+    private int[] dirtyMarks;
+    private int dirtyMark = 0;
+    private int[] newColorsOfChanged;
+    // Checkpoint of the cycle detection, and number of points whose color differs from it
+    private int[] checkpoint;
+    private int differences;
+    // Telemetry of the last time, only read while a listener is attached
+    private int recomputed;
+    private boolean[] isActive;
+
+    /**
+     * @param roads adjacent points of each point
+     * @param c initial color of each point
+     */
+    public ColorDynamics(RoadGraph roads, int[] c){
+        this(roads, c, null);
+    }
+
+    /**
+     * @param roads adjacent points of each point
+     * @param c initial color of each point
+     * @param pool pool updating the points in parallel, sequential if null
+     */
+    public ColorDynamics(RoadGraph roads, int[] c, ForkJoinPool pool){
+        int n = roads.points();
+        if(c.length < n)
+            throw new ArrayIndexOutOfBoundsException("Number of Colors(c) is out of bounds.");
+
+        this.roads = roads;
+        this.palette = toPalette(c, n);
+        this.counter = new ColorCounter(this.palette.length);
+        this.currentColors = new int[n];
+        this.nextColors = new int[n];
+        for(int point=0; point<n; point++)
+            this.currentColors[point] = Arrays.binarySearch(this.palette, c[point]);
+
+        int parts = pool == null ? 1 : Math.min(pool.getParallelism(), n);
+        this.pool = parts > 1 ? pool : null;
+        this.ranges = parts > 1 ? this.partition(parts) : null;
+        this.parallelStep = parts > 1 ? new ParallelStep() : null;
+    }
+
+    /**
+     * Proceed until the last of the given times, taking the colors at each of them on the way
+     * Times with the same colors share the same array
+     * @param times ascending times, none before the current time
+     * @return int[][] : color of each point at each time
+     */
+    public int[][] colorsAt(long[] times){
+        int[][] snapshots = new int[times.length][];
+        this.run(times, snapshots);
+        return snapshots;
+    }
+
+    @Override
+    protected int[] snapshot(){
+        return this.colors();
+    }
+
+    @Override
+    protected void takeCheckpoint(){
+        if(this.checkpoint == null)
+            this.checkpoint = new int[this.currentColors.length];
+        System.arraycopy(this.currentColors, 0, this.checkpoint, 0, this.checkpoint.length);
+        this.differences = 0;
+    }
+
+    @Override
+    protected boolean isAtCheckpoint(){
+        // The frontier counts the points differing from the checkpoint as they change
+        return this.histograms != null ? this.differences == 0 : Arrays.equals(this.currentColors, this.checkpoint);
+    }
+
+    @Override
+    protected boolean isFixedPoint(){
+        return this.histograms != null && this.changedSize == 0;
+    }
+
+    @Override
+    protected int changedPoints(){
+        // Right after a dense time the double buffer holds the colors of the previous time
+        if(this.histograms != null)
+            return this.changedSize;
+        int changed = 0;
+        for(int point=0; point<this.currentColors.length; point++){
+            if(this.currentColors[point] != this.nextColors[point])
+                changed++;
+        }
+        return changed;
+    }
+
+    @Override
+    protected int recomputedPoints(){
+        return this.recomputed;
+    }
+
+    @Override
+    protected int activeColors(){
+        if(this.isActive == null)
+            this.isActive = new boolean[this.palette.length];
+        Arrays.fill(this.isActive, false);
+        int active = 0;
+        for(int color : this.currentColors){
+            if(!this.isActive[color]){
+                this.isActive[color] = true;
+                active++;
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Proceed to the next time, with the frontier of changed points once it is small enough
+     */
+    @Override
+    protected void advance(){
+        if(this.histograms != null){
+            this.stepFrontier();
+            return;
+        }
+
+        this.stepDense();
+        // Points are updated in parallel with a pool, the frontier is sequential
+        if(this.pool == null)
+            this.startFrontierIfSmall();
+    }
+
+    /**
+     * Start the incremental mode if the adjacent points of the points changed on the last time are few
+     * nextColors holds the colors of the previous time right after step()
+     */
+    private void startFrontierIfSmall(){
+        int[] offsets = this.roads.offsets();
+        int n = this.currentColors.length;
+        long changedAdjacentPoints = 0;
+        for(int point=0; point<n; point++){
+            if(this.currentColors[point] != this.nextColors[point])
+                changedAdjacentPoints += offsets[point + 1] - offsets[point];
+        }
+        if(changedAdjacentPoints * FRONTIER_RATIO >= offsets[n])
+            return;
+
+        this.changedPoints = new int[n];
+        this.changedSize = 0;
+        for(int point=0; point<n; point++){
+            if(this.currentColors[point] != this.nextColors[point])
+                this.changedPoints[this.changedSize++] = point;
+        }
+        this.dirtyPoints = new int[n];
+        this.dirtyMarks = new int[n];
+        this.newColorsOfChanged = new int[n];
+        this.histograms = new ColorHistograms(this.roads, this.currentColors);
+        // The double buffer is not used anymore
+        this.nextColors = null;
+
+        // The differences to the checkpoint are counted from now on
+        this.differences = 0;
+        for(int point=0; point<n; point++){
+            if(this.currentColors[point] != this.checkpoint[point])
+                this.differences++;
+        }
+    }
+
+    /**
+     * Proceed to the next time by recomputing only the adjacent points of the points changed on the last time
+     * Every other point keeps its color since its adjacent colors did not change
+     */
+    private void stepFrontier(){
+        int[] offsets = this.roads.offsets();
+        int[] neighbors = this.roads.neighbors();
+        int[] colors = this.currentColors;
+
+        // Collect each adjacent point of the changed points once
+        int dirtySize = 0;
+        int mark = ++this.dirtyMark;
+        for(int index=0; index<this.changedSize; index++){
+            int point = this.changedPoints[index];
+            for(int adjacent=offsets[point]; adjacent<offsets[point + 1]; adjacent++){
+                int adjacentPoint = neighbors[adjacent];
+                if(this.dirtyMarks[adjacentPoint] != mark){
+                    this.dirtyMarks[adjacentPoint] = mark;
+                    this.dirtyPoints[dirtySize++] = adjacentPoint;
+                }
+            }
+        }
+
+        // Get the new colors from the colors of the previous time only
+        this.recomputed = dirtySize;
+        this.changedSize = 0;
+        for(int index=0; index<dirtySize; index++){
+            int point = this.dirtyPoints[index];
+            int newColor = this.histograms.mostFrequent(point);
+            if(newColor != colors[point]){
+                this.changedPoints[this.changedSize] = point;
+                this.newColorsOfChanged[this.changedSize++] = newColor;
+            }
+        }
+
+        // Apply the new colors and update the histograms of their adjacent points by +1/-1
+        for(int index=0; index<this.changedSize; index++){
+            int point = this.changedPoints[index];
+            int oldColor = colors[point], newColor = this.newColorsOfChanged[index];
+            colors[point] = newColor;
+            for(int adjacent=offsets[point]; adjacent<offsets[point + 1]; adjacent++)
+                this.histograms.move(neighbors[adjacent], oldColor, newColor);
+
+            if(oldColor == this.checkpoint[point])
+                this.differences++;
+            if(newColor == this.checkpoint[point])
+                this.differences--;
+        }
+        this.time++;
+    }
+
+    /**
+     * Proceed to the next time
+     * Every point takes the most frequent color of its adjacent points (smallest color on ties)
+     * A point without adjacent points keeps its color
+     */
+    public void step(){
+        if(this.histograms != null)
+            this.stepFrontier();
+        else
+            this.stepDense();
+    }
+
+    /**
+     * Proceed to the next time by recomputing every point into the double buffer
+     */
+    private void stepDense(){
+        this.recomputed = this.nextColors.length;
+        if(this.pool == null){
+            this.stepRange(0, this.nextColors.length, this.counter);
+        }else{
+            // Every range reads the colors of the previous time only, join is the barrier of this time
+            this.parallelStep.reinitialize();
+            this.pool.invoke(this.parallelStep);
+        }
+
+        // Swap the buffers, the new colors become the current colors
+        int[] colors = this.currentColors;
+        this.currentColors = this.nextColors;
+        this.nextColors = colors;
+        this.time++;
+    }
+
+    /**
+     * Get the new colors of the points from (inclusive) to (exclusive)
+     * @param from
+     * @param to
+     * @param counter scratch counter owned by the caller
+     */
+    private void stepRange(int from, int to, ColorCounter counter){
+        int[] offsets = this.roads.offsets();
+        int[] neighbors = this.roads.neighbors();
+        int[] colors = this.currentColors;
+        int[] newColors = this.nextColors;
+
+        for(int point=from; point<to; point++){
+            int start = offsets[point], end = offsets[point + 1];
+            if(start == end){
+                newColors[point] = colors[point];
+                continue;
+            }
+            for(int adjacent=start; adjacent<end; adjacent++)
+                counter.add(colors[neighbors[adjacent]]);
+            newColors[point] = counter.mostFrequent();
+            counter.clear();
+        }
+    }
+
+    /**
+     * @return int[] : color of each point at the current time
+     */
+    public int[] colors(){
+        int[] colors = new int[this.currentColors.length];
+        for(int point=0; point<colors.length; point++)
+            colors[point] = this.palette[this.currentColors[point]];
+        return colors;
+    }
+
+    /**
+     * Split the points into ranges with about the same number of points plus adjacent points
+     * @param parts
+     * @return RangeStep[]
+     */
+    private RangeStep[] partition(int parts){
+        int[] offsets = this.roads.offsets();
+        int n = this.roads.points();
+        long totalWeight = (long) offsets[n] + n;
+
+        RangeStep[] ranges = new RangeStep[parts];
+        int from = 0;
+        for(int part=0; part<parts; part++){
+            // Find the first point whose weight prefix (offsets[p] + p) reaches the end of this part
+            long target = totalWeight * (part + 1) / parts;
+            int low = from, high = n;
+            while(low < high){
+                int middle = (low + high) >>> 1;
+                if((long) offsets[middle] + middle < target)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            int to = part == parts - 1 ? n : low;
+            ranges[part] = new RangeStep(from, to, new ColorCounter(this.palette.length));
+            from = to;
+        }
+        return ranges;
+    }
+
+    /**
+     * Get the distinct colors in ascending order
+     * @param c
+     * @param n
+     * @return int[]
+     */
+    static int[] toPalette(int[] c, int n){
+        int[] sorted = Arrays.copyOf(c, n);
+        Arrays.sort(sorted);
+        int size = 0;
+        for(int index=0; index<n; index++){
+            if(size == 0 || sorted[size - 1] != sorted[index])
+                sorted[size++] = sorted[index];
+        }
+        return Arrays.copyOf(sorted, size);
+    }
+
+    /**
+     * Update one range of points with its own scratch counter
+     */
+    private final class RangeStep extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+        private final ColorCounter counter;
+
+        private RangeStep(int from, int to, ColorCounter counter){
+            this.from = from;
+            this.to = to;
+            this.counter = counter;
+        }
+
+        @Override
+        protected void compute(){
+            stepRange(this.from, this.to, this.counter);
+        }
+    }
+
+    /**
+     * Update every range for one time, the task objects are reused on each time
+     */
+    private final class ParallelStep extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute(){
+            for(int part=1; part<ranges.length; part++){
+                ranges[part].reinitialize();
+                ranges[part].fork();
+            }
+            ranges[0].compute();
+            for(int part=1; part<ranges.length; part++)
+                ranges[part].join();
+        }
+    }
+}
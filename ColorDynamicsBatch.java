@@ -0,0 +1,122 @@
+package track;
+
+import java.util.Arrays;
+
+public class ColorDynamicsBatch extends SynchronousDynamics<int[][]> {
+    private final RoadGraph roads;
+    private final int seedings;
+    // palette[id] is the original color of color id, ids keep the order of the colors
+    private final int[] palette;
+    // One scratch counter per seeding
+    private final ColorCounter[] counters;
+    // Color id of seeding s at point p is stored in colors[p * seedings + s],
+    // so the seedings of one adjacent point are read together on a single pass over the roads
+    private int[] currentColors;
+    private int[] nextColors;
+    private int[] checkpoint;
+
+    /**
+     * @param roads adjacent points of each point
+     * @param seedings initial color of each point, for each seeding
+     */
+    public ColorDynamicsBatch(RoadGraph roads, int[][] seedings){
+        int n = roads.points();
+        int[] allColors = new int[n * seedings.length];
+        for(int seeding=0; seeding<seedings.length; seeding++){
+            if(seedings[seeding].length < n)
+                throw new ArrayIndexOutOfBoundsException("Number of Colors(c) is out of bounds.");
+            System.arraycopy(seedings[seeding], 0, allColors, seeding * n, n);
+        }
+
+        this.roads = roads;
+        this.seedings = seedings.length;
+        this.palette = ColorDynamics.toPalette(allColors, allColors.length);
+        this.counters = new ColorCounter[this.seedings];
+        for(int seeding=0; seeding<this.seedings; seeding++)
+            this.counters[seeding] = new ColorCounter(this.palette.length);
+
+        this.currentColors = new int[allColors.length];
+        this.nextColors = new int[allColors.length];
+        for(int point=0; point<n; point++){
+            for(int seeding=0; seeding<this.seedings; seeding++)
+                this.currentColors[point * this.seedings + seeding] = Arrays.binarySearch(this.palette, seedings[seeding][point]);
+        }
+    }
+
+    /**
+     * Proceed until the last of the given times, taking the colors at each of them on the way
+     * Times with the same colors share the same arrays
+     * @param times ascending times, none before the current time
+     * @return int[][][] : color of each point of each seeding at each time
+     */
+    public int[][][] colorsAt(long[] times){
+        int[][][] snapshots = new int[times.length][][];
+        this.run(times, snapshots);
+        return snapshots;
+    }
+
+    /**
+     * @return int[][] : color of each point of each seeding at the current time
+     */
+    public int[][] colors(){
+        int n = this.roads.points();
+        int[][] colors = new int[this.seedings][n];
+        for(int point=0; point<n; point++){
+            for(int seeding=0; seeding<this.seedings; seeding++)
+                colors[seeding][point] = this.palette[this.currentColors[point * this.seedings + seeding]];
+        }
+        return colors;
+    }
+
+    /**
+     * Every point of every seeding takes the most frequent color of its adjacent points (smallest color on ties)
+     * A point without adjacent points keeps its color
+     */
+    @Override
+    protected void advance(){
+        int[] offsets = this.roads.offsets();
+        int[] neighbors = this.roads.neighbors();
+        int[] colors = this.currentColors;
+        int[] newColors = this.nextColors;
+        int seedings = this.seedings;
+
+        for(int point=0, n=this.roads.points(); point<n; point++){
+            int start = offsets[point], end = offsets[point + 1], base = point * seedings;
+            if(start == end){
+                System.arraycopy(colors, base, newColors, base, seedings);
+                continue;
+            }
+            for(int adjacent=start; adjacent<end; adjacent++){
+                int adjacentBase = neighbors[adjacent] * seedings;
+                for(int seeding=0; seeding<seedings; seeding++)
+                    this.counters[seeding].add(colors[adjacentBase + seeding]);
+            }
+            for(int seeding=0; seeding<seedings; seeding++){
+                newColors[base + seeding] = this.counters[seeding].mostFrequent();
+                this.counters[seeding].clear();
+            }
+        }
+
+        // Swap the buffers, the new colors become the current colors
+        this.nextColors = colors;
+        this.currentColors = newColors;
+        this.time++;
+    }
+
+    @Override
+    protected int[][] snapshot(){
+        return this.colors();
+    }
+
+    @Override
+    protected void takeCheckpoint(){
+        if(this.checkpoint == null)
+            this.checkpoint = new int[this.currentColors.length];
+        System.arraycopy(this.currentColors, 0, this.checkpoint, 0, this.checkpoint.length);
+    }
+
+    @Override
+    protected boolean isAtCheckpoint(){
+        return Arrays.equals(this.currentColors, this.checkpoint);
+    }
+}
@@ -0,0 +1,255 @@
+package track;
+
+import java.util.Arrays;
+
+public class ColorHistograms {
+    // Points with more adjacent points than this find their colors through a hash table instead of a scan
+    private static final int SCAN_DEGREE = 32;
+    private static final int UNKNOWN = -1;
+
+    private final int[] offsets;
+    // Distinct colors of the adjacent points of point p and their frequency are stored in
+    // colors[offsets[p] ... offsets[p]+size-1] and frequencies[offsets[p] ... offsets[p]+size-1], by descending frequency
+    private final int[] colors;
+    private final int[] frequencies;
+    // atLeast[offsets[p] + f - 1] is the number of distinct colors of frequency f or more around point p,
+    // so the colors of frequency f are in the slots offsets[p] + atLeast(f + 1) ... offsets[p] + atLeast(f) - 1
+    private final int[] atLeast;
+    // Smallest most frequent color of each point, UNKNOWN until it is asked again
+    private final int[] best;
+    // Hash table of point p from color to slot + 1 (0 if empty) in table[tableOffsets[p] ... tableOffsets[p+1]-1],
+    // empty for the points scanning their colors, tablePositions[slot] is the position of the color of the slot
+    private final int[] tableOffsets;
+    private final int[] table;
+    private final int[] tablePositions;
+
+    /**
+     * Count the colors of the adjacent points of every point
+     * @param roads adjacent points of each point
+     * @param currentColors color of each point
+     */
+    public ColorHistograms(RoadGraph roads, int[] currentColors){
+        int n = roads.points();
+        int[] neighbors = roads.neighbors();
+        this.offsets = roads.offsets();
+        this.colors = new int[neighbors.length];
+        this.frequencies = new int[neighbors.length];
+        this.atLeast = new int[neighbors.length];
+        this.best = new int[n];
+        Arrays.fill(this.best, UNKNOWN);
+
+        // Tables of at least twice the degree, a power of two
+        this.tableOffsets = new int[n + 1];
+        for(int point=0; point<n; point++){
+            int degree = this.offsets[point + 1] - this.offsets[point];
+            this.tableOffsets[point + 1] = this.tableOffsets[point] + (degree > SCAN_DEGREE ? Integer.highestOneBit(degree * 2 - 1) << 1 : 0);
+        }
+        this.table = new int[this.tableOffsets[n]];
+        this.tablePositions = this.table.length > 0 ? new int[neighbors.length] : null;
+
+        for(int point=0; point<n; point++){
+            for(int adjacent=this.offsets[point]; adjacent<this.offsets[point + 1]; adjacent++)
+                this.add(point, currentColors[neighbors[adjacent]]);
+        }
+    }
+
+    /**
+     * An adjacent point of the point changed its color, O(1) expected
+     * @param point
+     * @param oldColor
+     * @param newColor
+     */
+    public void move(int point, int oldColor, int newColor){
+        this.remove(point, oldColor);
+        this.add(point, newColor);
+    }
+
+    /**
+     * @param point
+     * @return int : most frequent color of the adjacent points, the smallest color on ties, -1 without adjacent points
+     */
+    public int mostFrequent(int point){
+        int start = this.offsets[point];
+        if(start == this.offsets[point + 1])
+            return -1;
+        if(this.best[point] != UNKNOWN)
+            return this.best[point];
+
+        // The most frequent colors are the first slots
+        int end = start + this.atLeast(point, this.frequencies[start]);
+        int mostFrequentColor = this.colors[start];
+        for(int slot=start + 1; slot<end; slot++)
+            mostFrequentColor = Math.min(mostFrequentColor, this.colors[slot]);
+        this.best[point] = mostFrequentColor;
+        return mostFrequentColor;
+    }
+
+    /** ******************************
+     * ***** HELPER METHODS **********
+     * *******************************
+     */
+
+    /**
+     * One more adjacent point of the color: it moves to the first slot of its frequency, then its frequency is incremented
+     * @param point
+     * @param color
+     */
+    private void add(int point, int color){
+        int start = this.offsets[point];
+        int size = this.atLeast(point, 1);
+        int maxFrequency = size > 0 ? this.frequencies[start] : 0;
+        int slot = this.find(point, color);
+        if(slot < 0){
+            slot = start + size;
+            this.colors[slot] = color;
+            this.frequencies[slot] = 0;
+            if(this.tablePositions != null && this.isHashed(point))
+                this.insert(point, slot);
+        }
+
+        int frequency = this.frequencies[slot];
+        int first = start + this.atLeast(point, frequency + 1);
+        this.swap(point, slot, first);
+        this.frequencies[first] = frequency + 1;
+        this.atLeast[start + frequency]++;
+
+        if(frequency + 1 > maxFrequency)
+            this.best[point] = color;
+        else if(frequency + 1 == maxFrequency && this.best[point] != UNKNOWN && color < this.best[point])
+            this.best[point] = color;
+    }
+
+    /**
+     * One less adjacent point of the color: it moves to the last slot of its frequency, then its frequency is decremented
+     * @param point
+     * @param color
+     */
+    private void remove(int point, int color){
+        int start = this.offsets[point];
+        int slot = this.find(point, color);
+        if(slot < 0)
+            return;
+
+        int frequency = this.frequencies[slot];
+        if(frequency == this.frequencies[start] && color == this.best[point])
+            this.best[point] = UNKNOWN;
+        int last = start + this.atLeast(point, frequency) - 1;
+        this.swap(point, slot, last);
+        this.frequencies[last] = frequency - 1;
+        this.atLeast[start + frequency - 1]--;
+        if(frequency == 1 && this.tablePositions != null && this.isHashed(point))
+            this.delete(point, last);
+    }
+
+    /**
+     * @param point
+     * @param frequency
+     * @return int : number of distinct colors of the frequency or more around the point
+     */
+    private int atLeast(int point, int frequency){
+        int start = this.offsets[point];
+        return frequency <= this.offsets[point + 1] - start ? this.atLeast[start + frequency - 1] : 0;
+    }
+
+    /**
+     * @param point
+     * @param color
+     * @return int : slot of the color around the point, -1 if no adjacent point has it
+     */
+    private int find(int point, int color){
+        if(this.tablePositions == null || !this.isHashed(point)){
+            int start = this.offsets[point], end = start + this.atLeast(point, 1);
+            for(int slot=start; slot<end; slot++){
+                if(this.colors[slot] == color)
+                    return slot;
+            }
+            return -1;
+        }
+
+        int tableStart = this.tableOffsets[point], mask = this.tableOffsets[point + 1] - tableStart - 1;
+        for(int position=hash(color) & mask; ; position=(position + 1) & mask){
+            int entry = this.table[tableStart + position];
+            if(entry == 0)
+                return -1;
+            if(this.colors[entry - 1] == color)
+                return entry - 1;
+        }
+    }
+
+    /**
+     * @param point
+     * @param slot
+     * @param otherSlot
+     */
+    private void swap(int point, int slot, int otherSlot){
+        if(slot == otherSlot)
+            return;
+        int color = this.colors[slot];
+        this.colors[slot] = this.colors[otherSlot];
+        this.colors[otherSlot] = color;
+        int frequency = this.frequencies[slot];
+        this.frequencies[slot] = this.frequencies[otherSlot];
+        this.frequencies[otherSlot] = frequency;
+        if(this.tablePositions == null || !this.isHashed(point))
+            return;
+
+        int position = this.tablePositions[slot];
+        this.tablePositions[slot] = this.tablePositions[otherSlot];
+        this.tablePositions[otherSlot] = position;
+        this.table[this.tablePositions[slot]] = slot + 1;
+        this.table[this.tablePositions[otherSlot]] = otherSlot + 1;
+    }
+
+    /**
+     * Add the color of the slot to the hash table of the point
+     * @param point
+     * @param slot
+     */
+    private void insert(int point, int slot){
+        int tableStart = this.tableOffsets[point], mask = this.tableOffsets[point + 1] - tableStart - 1;
+        int position = hash(this.colors[slot]) & mask;
+        while(this.table[tableStart + position] != 0)
+            position = (position + 1) & mask;
+        this.table[tableStart + position] = slot + 1;
+        this.tablePositions[slot] = tableStart + position;
+    }
+
+    /**
+     * Remove the color of the slot from the hash table of the point, the following colors are shifted back
+     * @param point
+     * @param slot
+     */
+    private void delete(int point, int slot){
+        int tableStart = this.tableOffsets[point], mask = this.tableOffsets[point + 1] - tableStart - 1;
+        int hole = this.tablePositions[slot] - tableStart;
+        this.table[tableStart + hole] = 0;
+        for(int position=(hole + 1) & mask; this.table[tableStart + position] != 0; position=(position + 1) & mask){
+            int entry = this.table[tableStart + position];
+            int home = hash(this.colors[entry - 1]) & mask;
+            // The color can fill the hole unless its home is between the hole and its position
+            if(((position - home) & mask) < ((position - hole) & mask))
+                continue;
+            this.table[tableStart + hole] = entry;
+            this.tablePositions[entry - 1] = tableStart + hole;
+            this.table[tableStart + position] = 0;
+            hole = position;
+        }
+    }
+
+    /**
+     * @param point
+     * @return boolean : true if the point finds its colors through its hash table
+     */
+    private boolean isHashed(int point){
+        return this.tableOffsets[point + 1] > this.tableOffsets[point];
+    }
+
+    /**
+     * @param color
+     * @return int
+     */
+    private static int hash(int color){
+        int hash = color * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
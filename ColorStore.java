@@ -0,0 +1,103 @@
+package track;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public final class ColorStore {
+    private final ByteBuffer buffer;
+    // Bytes per color: 1 (up to 256 colors), 2 (up to 65536 colors) or 4
+    private final int width;
+    private final int size;
+
+    private ColorStore(ByteBuffer buffer, int width, int size){
+        this.buffer = buffer;
+        this.width = width;
+        this.size = size;
+    }
+
+    /**
+     * Allocate the colors of (size) points, each color stored in the narrowest width fitting the palette
+     * @param size number of points
+     * @param paletteSize number of distinct colors, colors are 0 ... paletteSize-1
+     * @param offHeap true to allocate outside of the Java heap
+     * @return ColorStore
+     */
+    public static ColorStore allocate(int size, int paletteSize, boolean offHeap){
+        int width = paletteSize <= (1 << 8) ? 1 : paletteSize <= (1 << 16) ? 2 : 4;
+        if((long) size * width > Integer.MAX_VALUE)
+            throw new ArrayIndexOutOfBoundsException("Number of Points(n) is out of bounds.");
+
+        ByteBuffer buffer = offHeap ? ByteBuffer.allocateDirect(size * width) : ByteBuffer.allocate(size * width);
+        return new ColorStore(buffer.order(ByteOrder.nativeOrder()), width, size);
+    }
+
+    /**
+     * @param point
+     * @return int : color of the point
+     */
+    public int get(int point){
+        switch(this.width){
+            case 1:
+                return this.buffer.get(point) & 0xff;
+            case 2:
+                return this.buffer.getShort(point << 1) & 0xffff;
+            default:
+                return this.buffer.getInt(point << 2);
+        }
+    }
+
+    /**
+     * @param point
+     * @param color
+     */
+    public void set(int point, int color){
+        switch(this.width){
+            case 1:
+                this.buffer.put(point, (byte) color);
+                break;
+            case 2:
+                this.buffer.putShort(point << 1, (short) color);
+                break;
+            default:
+                this.buffer.putInt(point << 2, color);
+        }
+    }
+
+    /**
+     * @return int : number of points
+     */
+    public int size(){
+        return this.size;
+    }
+
+    /**
+     * @return int : bytes per color
+     */
+    public int width(){
+        return this.width;
+    }
+
+    /**
+     * Copy every color to another store of the same size and width
+     * @param other
+     */
+    public void copyTo(ColorStore other){
+        ByteBuffer source = this.buffer.duplicate();
+        source.clear();
+        ByteBuffer target = other.buffer.duplicate();
+        target.clear();
+        target.put(source);
+    }
+
+    /**
+     * @param other store of the same size and width
+     * @return boolean : true if every color is the same
+     */
+    public boolean contentEquals(ColorStore other){
+        ByteBuffer source = this.buffer.duplicate();
+        source.clear();
+        ByteBuffer target = other.buffer.duplicate();
+        target.clear();
+        return source.equals(target);
+    }
+}
@@ -0,0 +1,224 @@
+package track;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+public class CompactColorDynamics extends SynchronousDynamics<int[]> {
+    private final OffHeapRoadGraph roads;
+    // palette[id] is the original color of color id, ids keep the order of the colors
+    private final int[] palette;
+    private final ColorCounter counter;
+    // Color ids stored outside of the Java heap in 1, 2 or 4 bytes per point
+    private ColorStore currentColors;
+    private ColorStore nextColors;
+    private ColorStore checkpoint;
+    // Colors seen by activeColors, only used while a listener is attached
+    private boolean[] isActive;
+
+    /**
+     * @param roads adjacent points of each point
+     * @param c initial color of each point
+     */
+    public CompactColorDynamics(OffHeapRoadGraph roads, int[] c){
+        this(roads, IntBuffer.wrap(c));
+    }
+
+    /**
+     * @param roads adjacent points of each point
+     * @param c initial color of each point, e.g. read outside of the Java heap by readColors
+     */
+    public CompactColorDynamics(OffHeapRoadGraph roads, IntBuffer c){
+        int n = roads.points();
+        if(c.limit() < n)
+            throw new ArrayIndexOutOfBoundsException("Number of Colors(c) is out of bounds.");
+
+        this.roads = roads;
+        this.palette = toPalette(c, n);
+        this.counter = new ColorCounter(this.palette.length);
+        this.currentColors = ColorStore.allocate(n, this.palette.length, true);
+        this.nextColors = ColorStore.allocate(n, this.palette.length, true);
+        for(int point=0; point<n; point++)
+            this.currentColors.set(point, Arrays.binarySearch(this.palette, c.get(point)));
+    }
+
+    /**
+     * Read the colors c[1] ...c[n] outside of the Java heap
+     * @param in tokens of the colors
+     * @param n number of points
+     * @return IntBuffer
+     */
+    public static IntBuffer readColors(FastReader in, int n){
+        IntBuffer c = ByteBuffer.allocateDirect(n * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        for(int point=0; point<n; point++)
+            c.put(point, in.nextInt());
+        return c;
+    }
+
+    /**
+     * @return int[] : color of each point at the current time
+     */
+    public int[] colors(){
+        int[] colors = new int[this.currentColors.size()];
+        for(int point=0; point<colors.length; point++)
+            colors[point] = this.color(point);
+        return colors;
+    }
+
+    /**
+     * @param point
+     * @return int : color of the point at the current time
+     */
+    public int color(int point){
+        return this.palette[this.currentColors.get(point)];
+    }
+
+    /**
+     * @return int : number of points
+     */
+    public int points(){
+        return this.currentColors.size();
+    }
+
+    /**
+     * Every point takes the most frequent color of its adjacent points (smallest color on ties)
+     * A point without adjacent points keeps its color
+     */
+    @Override
+    protected void advance(){
+        OffHeapRoadGraph roads = this.roads;
+        ColorStore colors = this.currentColors;
+        ColorStore newColors = this.nextColors;
+        ColorCounter counter = this.counter;
+
+        for(int point=0, n=roads.points(); point<n; point++){
+            int start = roads.offset(point), end = roads.offset(point + 1);
+            if(start == end){
+                newColors.set(point, colors.get(point));
+                continue;
+            }
+            for(int adjacent=start; adjacent<end; adjacent++)
+                counter.add(colors.get(roads.neighbor(adjacent)));
+            newColors.set(point, counter.mostFrequent());
+            counter.clear();
+        }
+
+        // Swap the buffers, the new colors become the current colors
+        this.nextColors = colors;
+        this.currentColors = newColors;
+        this.time++;
+    }
+
+    @Override
+    protected int changedPoints(){
+        // The other buffer holds the colors of the previous time
+        int changed = 0;
+        for(int point=0, n=this.currentColors.size(); point<n; point++){
+            if(this.currentColors.get(point) != this.nextColors.get(point))
+                changed++;
+        }
+        return changed;
+    }
+
+    @Override
+    protected int recomputedPoints(){
+        return this.currentColors.size();
+    }
+
+    @Override
+    protected int activeColors(){
+        if(this.isActive == null)
+            this.isActive = new boolean[this.palette.length];
+        Arrays.fill(this.isActive, false);
+        int active = 0;
+        for(int point=0, n=this.currentColors.size(); point<n; point++){
+            int color = this.currentColors.get(point);
+            if(!this.isActive[color]){
+                this.isActive[color] = true;
+                active++;
+            }
+        }
+        return active;
+    }
+
+    @Override
+    protected int[] snapshot(){
+        return this.colors();
+    }
+
+    @Override
+    protected void takeCheckpoint(){
+        if(this.checkpoint == null)
+            this.checkpoint = ColorStore.allocate(this.currentColors.size(), this.palette.length, true);
+        this.currentColors.copyTo(this.checkpoint);
+    }
+
+    @Override
+    protected boolean isAtCheckpoint(){
+        return this.currentColors.contentEquals(this.checkpoint);
+    }
+
+    /** ******************************
+     * ***** HELPER METHODS **********
+     * *******************************
+     */
+
+    /**
+     * Distinct colors in ascending order, collected in a hash set so the colors are not copied to the Java heap
+     * @param c
+     * @param n
+     * @return int[] : palette[id] is the original color of color id
+     */
+    private static int[] toPalette(IntBuffer c, int n){
+        int[] colors = new int[16];
+        boolean[] isUsed = new boolean[16];
+        int size = 0;
+        for(int point=0; point<n; point++){
+            int color = c.get(point);
+            int mask = colors.length - 1;
+            int slot = hash(color) & mask;
+            while(isUsed[slot] && colors[slot] != color)
+                slot = (slot + 1) & mask;
+            if(isUsed[slot])
+                continue;
+            isUsed[slot] = true;
+            colors[slot] = color;
+            if(++size * 2 <= colors.length)
+                continue;
+
+            // Grow the set
+            int[] oldColors = colors;
+            boolean[] wasUsed = isUsed;
+            colors = new int[oldColors.length * 2];
+            isUsed = new boolean[oldColors.length * 2];
+            mask = colors.length - 1;
+            for(int oldSlot=0; oldSlot<oldColors.length; oldSlot++){
+                if(!wasUsed[oldSlot])
+                    continue;
+                int newSlot = hash(oldColors[oldSlot]) & mask;
+                while(isUsed[newSlot])
+                    newSlot = (newSlot + 1) & mask;
+                isUsed[newSlot] = true;
+                colors[newSlot] = oldColors[oldSlot];
+            }
+        }
+
+        int[] palette = new int[size];
+        for(int slot=0, index=0; slot<colors.length; slot++){
+            if(isUsed[slot])
+                palette[index++] = colors[slot];
+        }
+        Arrays.sort(palette);
+        return palette;
+    }
+
+    /**
+     * @param color
+     * @return int
+     */
+    private static int hash(int color){
+        int hash = color * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
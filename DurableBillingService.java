@@ -0,0 +1,232 @@
+package track;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class DurableBillingService implements Closeable {
+    public static final String SNAPSHOT_FILE = "snapshot.bin";
+    public static final String JOURNAL_FILE = "journal.bin";
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 100000;
+
+    private static final int SNAPSHOT_MAGIC = 0x43435353; // "CCSS"
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int SNAPSHOT_HEADER_BYTES = Integer.BYTES * 3 + Long.BYTES;
+    // Requests buffered before they are written to the journal
+    private static final int JOURNAL_BUFFER_REQUESTS = 4096;
+
+    /**
+     * When the written bytes are forced to the storage device
+     */
+    public enum SyncPolicy {
+        // Left to the operating system
+        NEVER,
+        // The journal and the snapshot are forced on every snapshot and on close
+        ON_SNAPSHOT,
+        // The journal is forced before every request returns, the snapshot on every snapshot
+        EVERY_REQUEST
+    }
+
+    private final Path directory;
+    private final int snapshotInterval;
+    private final SyncPolicy policy;
+    private final CloudComputingService service = new CloudComputingService();
+    private final FileChannel journal;
+    private final ByteBuffer journalBuffer = ByteBuffer.allocate(JOURNAL_BUFFER_REQUESTS * BillingRequest.BYTES);
+    // Requests in the journal, and requests covered by the last snapshot
+    private long requests = 0;
+    private long snapshotRequests = 0;
+
+    /**
+     * Restore the service from the snapshot and the journal of the directory, both created if missing
+     * Only the requests journaled after the snapshot are replayed
+     * @param directory
+     * @param snapshotInterval number of requests between automatic snapshots, 0 for none
+     * @param policy
+     */
+    public DurableBillingService(Path directory, int snapshotInterval, SyncPolicy policy){
+        this.directory = directory;
+        this.snapshotInterval = snapshotInterval;
+        this.policy = policy;
+        try{
+            Files.createDirectories(directory);
+            this.snapshotRequests = this.loadSnapshot();
+            this.journal = FileChannel.open(directory.resolve(JOURNAL_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.replayJournal();
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param directory
+     */
+    public DurableBillingService(Path directory){
+        this(directory, DEFAULT_SNAPSHOT_INTERVAL, SyncPolicy.ON_SNAPSHOT);
+    }
+
+    /**
+     * Encode the request to the journal, then process it
+     * A request failing in the service stays journaled, the replay fails on it the same way after the same changes
+     * @param request
+     * @param response the log of the request is appended to it
+     * @throws IllegalArgumentException if the request is out of range of the journal, it is then neither journaled nor processed
+     */
+    public void process(BillingRequest request, ResponseEncoder response){
+        // A request the journal cannot hold is rejected before it changes the state
+        request.write(this.journalBuffer);
+        this.requests++;
+        try{
+            this.service.process(request, response);
+        }finally{
+            if(this.policy == SyncPolicy.EVERY_REQUEST || !this.journalBuffer.hasRemaining())
+                this.flushJournal(this.policy == SyncPolicy.EVERY_REQUEST);
+            if(this.snapshotInterval > 0 && this.requests - this.snapshotRequests >= this.snapshotInterval)
+                this.snapshot();
+        }
+    }
+
+    /**
+     * @param request
+     * @return String : log of the request
+     */
+    public String process(BillingRequest request){
+        ResponseEncoder response = new ResponseEncoder();
+        this.process(request, response);
+        return response.toString();
+    }
+
+    /**
+     * Write the state of the service to the snapshot file, replacing the previous snapshot atomically
+     */
+    public void snapshot(){
+        boolean isForced = this.policy != SyncPolicy.NEVER;
+        this.flushJournal(isForced);
+
+        int stateBytes = this.service.stateBytes();
+        ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES + stateBytes);
+        buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putLong(this.requests).putInt(stateBytes);
+        this.service.writeState(buffer);
+        buffer.flip();
+
+        Path temporary = this.directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try{
+            try(FileChannel channel = FileChannel.open(temporary,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+                while(buffer.hasRemaining())
+                    channel.write(buffer);
+                if(isForced)
+                    channel.force(true);
+            }
+            Files.move(temporary, this.directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+        this.snapshotRequests = this.requests;
+    }
+
+    /**
+     * @return long : number of requests processed since the journal was created
+     */
+    public long requests(){
+        return this.requests;
+    }
+
+    /**
+     * @return CloudComputingService : the restored service, requests given to it directly are not journaled
+     */
+    public CloudComputingService service(){
+        return this.service;
+    }
+
+    @Override
+    public void close(){
+        this.flushJournal(this.policy != SyncPolicy.NEVER);
+        try{
+            this.journal.close();
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** ******************************
+     * ***** HELPER METHODS **********
+     * *******************************
+     */
+
+    /**
+     * @return long : number of journaled requests covered by the snapshot, 0 if there is no snapshot
+     * @throws IOException
+     */
+    private long loadSnapshot() throws IOException{
+        Path path = this.directory.resolve(SNAPSHOT_FILE);
+        if(!Files.exists(path))
+            return 0;
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if(buffer.remaining() < SNAPSHOT_HEADER_BYTES || buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION)
+            throw new IllegalStateException("Not a billing snapshot of version " + SNAPSHOT_VERSION + ": " + path);
+        long snapshotRequests = buffer.getLong();
+        if(buffer.getInt() != buffer.remaining())
+            throw new IllegalStateException("Truncated billing snapshot: " + path);
+        this.service.readState(buffer);
+        return snapshotRequests;
+    }
+
+    /**
+     * Replay the journaled requests after the snapshot, and drop a request partially written by a crash
+     * @throws IOException
+     */
+    private void replayJournal() throws IOException{
+        long journaledRequests = this.journal.size() / BillingRequest.BYTES;
+        if(journaledRequests < this.snapshotRequests)
+            throw new IllegalStateException("Journal is shorter than the snapshot: " + journaledRequests + " < " + this.snapshotRequests);
+        this.journal.truncate(journaledRequests * BillingRequest.BYTES);
+
+        BillingRequest request = new BillingRequest();
+        ResponseEncoder response = new ResponseEncoder();
+        long position = this.snapshotRequests * BillingRequest.BYTES;
+        ByteBuffer buffer = this.journalBuffer;
+        while(position < this.journal.size()){
+            buffer.clear();
+            while(buffer.hasRemaining() && this.journal.read(buffer, position + buffer.position()) > 0);
+            buffer.flip();
+            position += buffer.limit();
+            while(buffer.remaining() >= BillingRequest.BYTES){
+                try{
+                    this.service.process(request.read(buffer), response.clear());
+                }catch(RuntimeException e){
+                    // The request failed when it was processed too, the service then went on with the next one
+                }
+            }
+        }
+
+        buffer.clear();
+        this.journal.position(this.journal.size());
+        this.requests = journaledRequests;
+    }
+
+    /**
+     * Write the buffered requests to the journal
+     * @param isForced true to force them to the storage device
+     */
+    private void flushJournal(boolean isForced){
+        try{
+            this.journalBuffer.flip();
+            while(this.journalBuffer.hasRemaining())
+                this.journal.write(this.journalBuffer);
+            this.journalBuffer.clear();
+            if(isForced)
+                this.journal.force(false);
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package track;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+public class EpochMinutes {
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    // Range of LocalDateTime in minutes
+    private static final long MIN = of(LocalDateTime.MIN);
+    private static final long MAX = of(LocalDateTime.MAX);
+
+    // First minute of every month from 1900-01 to 2200-01, MONTH_STARTS[i] is the start of month index FIRST_MONTH_INDEX + i
+    private static final int FIRST_MONTH_INDEX = 1900 * 12;
+    private static final long[] MONTH_STARTS = new long[300 * 12 + 1];
+    private static final long AVERAGE_MINUTES_PER_MONTH = 146097L * MINUTES_PER_DAY / (400 * 12) + 1;
+    static {
+        for(int index=0; index<MONTH_STARTS.length; index++)
+            MONTH_STARTS[index] = civilMonthStart(FIRST_MONTH_INDEX + index);
+    }
+
+    private EpochMinutes(){
+    }
+
+    /**
+     * Get the minutes since 1970-01-01 00:00 of the given date and time
+     * @param year
+     * @param month 1 ... 12
+     * @param day 1 ... 31
+     * @param hour 0 ... 23
+     * @param minute 0 ... 59
+     * @return long
+     */
+    public static long of(int year, int month, int day, int hour, int minute){
+        if(month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month) || hour < 0 || hour > 23 || minute < 0 || minute > 59)
+            throw new DateTimeException(String.format("Invalid date time: %d-%d-%d %d:%d", year, month, day, hour, minute));
+
+        return epochDay(year, month, day) * MINUTES_PER_DAY + hour * 60 + minute;
+    }
+
+    /**
+     * Parse a date "yyyy-MM-dd" and a time "HH:mm", other ISO-8601 times through LocalDateTime.parse
+     * @param date
+     * @param time
+     * @return long : minutes since 1970-01-01 00:00
+     */
+    public static long parse(String date, String time){
+        if(date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-' || time.length() != 5 || time.charAt(2) != ':')
+            return of(LocalDateTime.parse(date + "T" + time));
+
+        return of(parseDigits(date, 0, 4), parseDigits(date, 5, 7), parseDigits(date, 8, 10), parseDigits(time, 0, 2), parseDigits(time, 3, 5));
+    }
+
+    /**
+     * @param dateTime
+     * @return long : minutes since 1970-01-01 00:00
+     */
+    public static long of(LocalDateTime dateTime){
+        return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    /**
+     * @param epochMinute minutes since 1970-01-01 00:00
+     * @return LocalDateTime
+     */
+    public static LocalDateTime toLocalDateTime(long epochMinute){
+        return LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * @param epochMinute minutes since 1970-01-01 00:00
+     * @return long : year * 12 + (month - 1) of the minute, beyond int for the years of LocalDateTime
+     */
+    public static long monthIndex(long epochMinute){
+        if(epochMinute >= MONTH_STARTS[0] && epochMinute < MONTH_STARTS[MONTH_STARTS.length - 1]){
+            // Estimate the month from the average month length, then correct it with the table
+            int index = (int) ((epochMinute - MONTH_STARTS[0]) / AVERAGE_MINUTES_PER_MONTH);
+            while(MONTH_STARTS[index + 1] <= epochMinute)
+                index++;
+            while(MONTH_STARTS[index] > epochMinute)
+                index--;
+            return FIRST_MONTH_INDEX + index;
+        }
+        return civilMonthIndex(epochMinute);
+    }
+
+    /**
+     * @param monthIndex year * 12 + (month - 1)
+     * @return long : minutes since 1970-01-01 00:00 of the first day of the month at 00:00
+     */
+    public static long monthStart(long monthIndex){
+        long index = monthIndex - FIRST_MONTH_INDEX;
+        if(index >= 0 && index < MONTH_STARTS.length)
+            return MONTH_STARTS[(int) index];
+        return civilMonthStart(monthIndex);
+    }
+
+    /**
+     * Add months as LocalDateTime.plusMonths does, the day is clamped to the last day of the month
+     * @param epochMinute minutes since 1970-01-01 00:00
+     * @param months
+     * @return long : minutes since 1970-01-01 00:00
+     */
+    public static long plusMonths(long epochMinute, int months){
+        long monthIndex = monthIndex(epochMinute);
+        long offset = epochMinute - monthStart(monthIndex);
+        long start = monthStart(monthIndex + months);
+        long lastDay = (monthStart(monthIndex + months + 1) - start) / MINUTES_PER_DAY - 1;
+        return start + Math.min(offset / MINUTES_PER_DAY, lastDay) * MINUTES_PER_DAY + offset % MINUTES_PER_DAY;
+    }
+
+    /**
+     * Add minutes as LocalDateTime.plusMinutes does
+     * @param epochMinute minutes since 1970-01-01 00:00
+     * @param minutes
+     * @return long : minutes since 1970-01-01 00:00
+     * @throws DateTimeException if the result is out of the range of LocalDateTime
+     */
+    public static long plusMinutes(long epochMinute, long minutes){
+        long result = epochMinute + minutes;
+        boolean isOverflow = ((epochMinute ^ result) & (minutes ^ result)) < 0;
+        if(isOverflow || result < MIN || result > MAX)
+            throw new DateTimeException("Invalid date time: " + epochMinute + " plus " + minutes + " minutes");
+        return result;
+    }
+
+    /**
+     * @param text
+     * @param from
+     * @param to
+     * @return int : decimal digits text[from ... to-1]
+     */
+    private static int parseDigits(String text, int from, int to){
+        int value = 0;
+        for(int index=from; index<to; index++){
+            char digit = text.charAt(index);
+            if(digit < '0' || digit > '9')
+                throw new DateTimeException("Invalid date time: " + text);
+            value = value * 10 + (digit - '0');
+        }
+        return value;
+    }
+
+    /**
+     * @param epochMinute
+     * @return long : year * 12 + (month - 1) of the minute, from the civil date of its day
+     */
+    private static long civilMonthIndex(long epochMinute){
+        // Proleptic Gregorian calendar, years starting on March 1st
+        long z = Math.floorDiv(epochMinute, MINUTES_PER_DAY) + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 12 + month - 1;
+    }
+
+    /**
+     * @param monthIndex
+     * @return long : minutes since 1970-01-01 00:00 of the first day of the month, from its civil date
+     */
+    private static long civilMonthStart(long monthIndex){
+        long year = Math.floorDiv(monthIndex, 12);
+        int month = Math.floorMod(monthIndex, 12) + 1;
+        return epochDay(year, month, 1) * MINUTES_PER_DAY;
+    }
+
+    /**
+     * Days since 1970-01-01 of a date in the proleptic Gregorian calendar
+     * @param year
+     * @param month
+     * @param day
+     * @return long
+     */
+    private static long epochDay(long year, int month, int day){
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * @param year
+     * @param month
+     * @return int : number of days of the month
+     */
+    private static int lengthOfMonth(int year, int month){
+        if(month == 2)
+            return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+}
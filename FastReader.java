@@ -0,0 +1,249 @@
+package track;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class FastReader implements Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private final byte[] bytes;
+    // Bytes not read yet
+    protected ByteBuffer buffer;
+    // Bytes of the last token read by readToken()
+    private byte[] token = new byte[64];
+
+    public FastReader(InputStream in){
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param in stream read in chunks of bufferSize bytes
+     * @param bufferSize
+     */
+    public FastReader(InputStream in, int bufferSize){
+        this.in = in;
+        this.bytes = new byte[bufferSize];
+        this.buffer = ByteBuffer.wrap(this.bytes, 0, 0);
+    }
+
+    /**
+     * For readers whose buffer is filled by an overridden refill()
+     */
+    protected FastReader(){
+        this.in = null;
+        this.bytes = null;
+        this.buffer = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Fill the buffer with the next bytes of the input
+     * @return boolean : false if the input is finished
+     */
+    protected boolean refill(){
+        try{
+            int read = this.in.read(this.bytes);
+            if(read <= 0)
+                return false;
+            this.buffer.clear();
+            this.buffer.limit(read);
+            return true;
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Skip the spaces and line breaks
+     * @return boolean : true if a token remains
+     */
+    public boolean hasNext(){
+        int b;
+        while((b = this.peek()) != -1 && b <= ' ')
+            this.buffer.get();
+        return b != -1;
+    }
+
+    /**
+     * @return String : next token
+     */
+    public String next(){
+        int length = this.readToken();
+        return new String(this.token, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Match the next token with the given words without creating a String
+     * @param words
+     * @return int : index of the matched word
+     */
+    public int nextIndexOf(String[] words){
+        int length = this.readToken();
+        int index = this.indexOf(words, length);
+        if(index < 0)
+            throw new IllegalArgumentException("Unknown token: " + new String(this.token, 0, length, StandardCharsets.US_ASCII));
+        return index;
+    }
+
+    /**
+     * Match the next token with the given words without creating a String, the token is consumed even if unknown
+     * @param words
+     * @return int : index of the matched word, -1 if the token is none of the words
+     */
+    public int tryNextIndexOf(String[] words){
+        return this.indexOf(words, this.readToken());
+    }
+
+    /**
+     * Skip the rest of the current line, its line break included
+     */
+    public void skipLine(){
+        int b;
+        while((b = this.peek()) != -1){
+            this.buffer.get();
+            if(b == '\n')
+                return;
+        }
+    }
+
+    /**
+     * @return int : next token parsed as int
+     */
+    public int nextInt(){
+        long value = this.nextLong();
+        if(value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+            throw new NumberFormatException("Value out of range: " + value);
+        return (int) value;
+    }
+
+    /**
+     * @return long : next token parsed as long
+     */
+    public long nextLong(){
+        int length = this.readToken();
+        return parseLong(this.token, 0, length);
+    }
+
+    /**
+     * Plain integers of up to 15 digits are converted directly, other values through Double.parseDouble
+     * @return double : next token parsed as double
+     */
+    public double nextDouble(){
+        int length = this.readToken();
+        boolean isPlainInteger = length > 0 && length <= 15;
+        for(int index=0; index<length && isPlainInteger; index++)
+            isPlainInteger = this.token[index] >= '0' && this.token[index] <= '9';
+
+        if(isPlainInteger)
+            return parseLong(this.token, 0, length);
+        return Double.parseDouble(new String(this.token, 0, length, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Read a date and a time "yyyy-MM-dd HH:mm"
+     * @return long : minutes since 1970-01-01 00:00
+     */
+    public long nextEpochMinute(){
+        int length = this.readToken();
+        if(length != 10 || this.token[4] != '-' || this.token[7] != '-')
+            throw new NumberFormatException("Invalid date: " + new String(this.token, 0, length, StandardCharsets.US_ASCII));
+        int year = (int) parseLong(this.token, 0, 4);
+        int month = (int) parseLong(this.token, 5, 7);
+        int day = (int) parseLong(this.token, 8, 10);
+
+        length = this.readToken();
+        if(length != 5 || this.token[2] != ':')
+            throw new NumberFormatException("Invalid time: " + new String(this.token, 0, length, StandardCharsets.US_ASCII));
+        int hour = (int) parseLong(this.token, 0, 2);
+        int minute = (int) parseLong(this.token, 3, 5);
+
+        return EpochMinutes.of(year, month, day, hour, minute);
+    }
+
+    @Override
+    public void close(){
+        try{
+            if(this.in != null)
+                this.in.close();
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** ******************************
+     * ***** HELPER METHODS **********
+     * *******************************
+     */
+
+    /**
+     * @return int : next byte without consuming it, -1 if the input is finished
+     */
+    private int peek(){
+        if(!this.buffer.hasRemaining() && !this.refill())
+            return -1;
+        return this.buffer.get(this.buffer.position()) & 0xff;
+    }
+
+    /**
+     * Copy the next token to "token"
+     * @return int : length of the token
+     */
+    private int readToken(){
+        if(!this.hasNext())
+            throw new ArrayIndexOutOfBoundsException("No more tokens in the input.");
+
+        int length = 0, b;
+        while((b = this.peek()) != -1 && b > ' '){
+            if(length == this.token.length)
+                this.token = Arrays.copyOf(this.token, length * 2);
+            this.token[length++] = this.buffer.get();
+        }
+        return length;
+    }
+
+    /**
+     * @param words
+     * @param length length of the token
+     * @return int : index of the word equal to the token, -1 if none
+     */
+    private int indexOf(String[] words, int length){
+        for(int index=0; index<words.length; index++){
+            String word = words[index];
+            if(word.length() != length)
+                continue;
+            int position = 0;
+            while(position < length && this.token[position] == word.charAt(position))
+                position++;
+            if(position == length)
+                return index;
+        }
+        return -1;
+    }
+
+    /**
+     * @param bytes
+     * @param from (inclusive)
+     * @param to (exclusive)
+     * @return long
+     */
+    private static long parseLong(byte[] bytes, int from, int to){
+        boolean isNegative = from < to && bytes[from] == '-';
+        int index = isNegative || (from < to && bytes[from] == '+') ? from + 1 : from;
+        if(index == to || to - index > 18)
+            return Long.parseLong(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+
+        long value = 0;
+        for(; index<to; index++){
+            int digit = bytes[index] - '0';
+            if(digit < 0 || digit > 9)
+                throw new NumberFormatException("For input string: \"" + new String(bytes, from, to - from, StandardCharsets.US_ASCII) + "\"");
+            value = value * 10 + digit;
+        }
+        return isNegative ? -value : value;
+    }
+}
@@ -0,0 +1,176 @@
+package track;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+public class FastWriter implements Closeable, Flushable {
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final OutputStream out;
+    private final WritableByteChannel channel;
+    private final byte[] bytes;
+    private final ByteBuffer buffer;
+    private int size = 0;
+    // Digits of the last number written, filled from the end
+    private final byte[] digits = new byte[20];
+
+    public FastWriter(OutputStream out){
+        this(out, null, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param channel channel (e.g. FileChannel) receiving the bytes
+     */
+    public FastWriter(WritableByteChannel channel){
+        this(null, channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param out stream receiving the bytes, used if not null
+     * @param channel channel receiving the bytes, used if out is null
+     * @param bufferSize number of bytes written at a time
+     */
+    public FastWriter(OutputStream out, WritableByteChannel channel, int bufferSize){
+        if(bufferSize < this.digits.length)
+            throw new IllegalArgumentException("Buffer size must be at least " + this.digits.length);
+        this.out = out;
+        this.channel = channel;
+        this.bytes = new byte[bufferSize];
+        this.buffer = ByteBuffer.wrap(this.bytes);
+    }
+
+    /**
+     * @param b ASCII character
+     * @return FastWriter
+     */
+    public FastWriter writeByte(int b){
+        if(this.size == this.bytes.length)
+            this.flushBuffer();
+        this.bytes[this.size++] = (byte) b;
+        return this;
+    }
+
+    /**
+     * @param bytes
+     * @param from
+     * @param length
+     * @return FastWriter
+     */
+    public FastWriter writeBytes(byte[] bytes, int from, int length){
+        while(length > 0){
+            if(this.size == this.bytes.length)
+                this.flushBuffer();
+            int chunk = Math.min(length, this.bytes.length - this.size);
+            System.arraycopy(bytes, from, this.bytes, this.size, chunk);
+            this.size += chunk;
+            from += chunk;
+            length -= chunk;
+        }
+        return this;
+    }
+
+    /**
+     * @param text ASCII text
+     * @return FastWriter
+     */
+    public FastWriter writeAscii(CharSequence text){
+        for(int index=0, length=text.length(); index<length; index++)
+            this.writeByte(text.charAt(index));
+        return this;
+    }
+
+    /**
+     * @param value
+     * @return FastWriter
+     */
+    public FastWriter writeInt(int value){
+        return this.writeLong(value);
+    }
+
+    /**
+     * Write the decimal digits of the value without creating a String
+     * @param value
+     * @return FastWriter
+     */
+    public FastWriter writeLong(long value){
+        if(value == Long.MIN_VALUE)
+            return this.writeAscii(String.valueOf(value));
+        if(this.bytes.length - this.size < this.digits.length)
+            this.flushBuffer();
+        if(value < 0){
+            this.bytes[this.size++] = '-';
+            value = -value;
+        }
+
+        int start = this.digits.length;
+        do{
+            this.digits[--start] = (byte) ('0' + value % 10);
+            value /= 10;
+        }while(value > 0);
+
+        int length = this.digits.length - start;
+        System.arraycopy(this.digits, start, this.bytes, this.size, length);
+        this.size += length;
+        return this;
+    }
+
+    /**
+     * @return FastWriter
+     */
+    public FastWriter newLine(){
+        return this.writeByte('\n');
+    }
+
+    /**
+     * Write the buffered bytes to the stream or channel
+     */
+    @Override
+    public void flush(){
+        this.flushBuffer();
+        try{
+            if(this.out != null)
+                this.out.flush();
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close(){
+        this.flush();
+        try{
+            if(this.out != null)
+                this.out.close();
+            else
+                this.channel.close();
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write the buffered bytes in one chunk and reuse the buffer
+     */
+    private void flushBuffer(){
+        if(this.size == 0)
+            return;
+        try{
+            if(this.out != null){
+                this.out.write(this.bytes, 0, this.size);
+            }else{
+                this.buffer.clear();
+                this.buffer.limit(this.size);
+                while(this.buffer.hasRemaining())
+                    this.channel.write(this.buffer);
+            }
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+        this.size = 0;
+    }
+}
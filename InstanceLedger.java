@@ -0,0 +1,240 @@
+package track;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class InstanceLedger {
+    private static final long NONE = Long.MIN_VALUE;
+
+    // Running instances by launch minute (open addressing, an entry is never removed until clear())
+    private long[] launchMinutes = new long[4];
+    private double[] instances = new double[4];
+    private boolean[] isUsed = new boolean[4];
+    private int size = 0;
+
+    // Running instances by launch month: count and sum of (instances * launch minute)
+    private long[] months = new long[2];
+    private double[] monthInstances = new double[2];
+    private double[] monthInstanceMinutes = new double[2];
+    private int monthSize = 0;
+
+    private double totalInstances = 0;
+
+    // Uptime of the last minute asked, until the instances change (NONE if not computed)
+    private long uptimeMinute = NONE;
+    private double lastUptime = 0.0;
+
+    /**
+     * Launch instances at the given minute, replacing the instances already launched at that minute
+     * @param launchMinute minutes since 1970-01-01 00:00
+     * @param count
+     */
+    public void launch(long launchMinute, double count){
+        int slot = this.find(launchMinute);
+        if(this.isUsed[slot]){
+            this.addToMonth(launchMinute, -this.instances[slot]);
+        }else{
+            this.isUsed[slot] = true;
+            this.launchMinutes[slot] = launchMinute;
+            this.size++;
+        }
+        this.instances[slot] = count;
+        this.addToMonth(launchMinute, count);
+
+        if(this.size * 2 > this.isUsed.length)
+            this.grow();
+    }
+
+    /**
+     * Stop instances launched at the given minute, the launch stays with 0 instances if all are stopped
+     * @param launchMinute minutes since 1970-01-01 00:00
+     * @param count
+     */
+    public void stop(long launchMinute, double count){
+        int slot = this.find(launchMinute);
+        if(!this.isUsed[slot])
+            throw new IllegalArgumentException("No instances launched at minute " + launchMinute);
+        this.instances[slot] -= count;
+        this.addToMonth(launchMinute, -count);
+    }
+
+    /**
+     * @param launchMinute minutes since 1970-01-01 00:00
+     * @return boolean : true if instances were launched at the given minute
+     */
+    public boolean contains(long launchMinute){
+        return this.isUsed[this.find(launchMinute)];
+    }
+
+    /**
+     * @param launchMinute minutes since 1970-01-01 00:00
+     * @return double : running instances launched at the given minute, 0 if none
+     */
+    public double get(long launchMinute){
+        int slot = this.find(launchMinute);
+        return this.isUsed[slot] ? this.instances[slot] : 0;
+    }
+
+    /**
+     * @return double : running instances of every launch
+     */
+    public double totalInstances(){
+        return this.totalInstances;
+    }
+
+    /**
+     * @return boolean : true if nothing was launched since the last clear
+     */
+    public boolean isEmpty(){
+        return this.size == 0;
+    }
+
+    /**
+     * Remove every launch
+     */
+    public void clear(){
+        Arrays.fill(this.isUsed, false);
+        this.size = 0;
+        this.monthSize = 0;
+        this.totalInstances = 0;
+        this.uptimeMinute = NONE;
+    }
+
+    /**
+     * Total uptime of the running instances until the given minute
+     * Instances launched on a previous month count from the last minute of the previous month
+     * Requests sent in the same minute share one computation until the instances change
+     * @param minute minutes since 1970-01-01 00:00
+     * @return double : instance-minutes
+     */
+    public double uptime(long minute){
+        if(minute == this.uptimeMinute && minute != NONE)
+            return this.lastUptime;
+        long month = EpochMinutes.monthIndex(minute);
+        double uptime = 0.0;
+        for(int index=0; index<this.monthSize; index++){
+            if(this.months[index] < month)
+                uptime += this.monthInstances[index] * (minute - EpochMinutes.monthStart(month) + 1);
+            else
+                uptime += this.monthInstances[index] * minute - this.monthInstanceMinutes[index];
+        }
+        this.uptimeMinute = minute;
+        this.lastUptime = uptime;
+        return uptime;
+    }
+
+    /**
+     * @return int : bytes of the ledger in a snapshot
+     */
+    public int stateBytes(){
+        return Integer.BYTES * 2 + this.size * (Long.BYTES + Double.BYTES)
+            + this.monthSize * (Long.BYTES + Double.BYTES * 2) + Double.BYTES;
+    }
+
+    /**
+     * Write the launches and the running totals to a snapshot, as they are so the totals stay exact
+     * @param buffer at least stateBytes() remaining
+     */
+    public void writeState(ByteBuffer buffer){
+        buffer.putInt(this.size);
+        for(int slot=0; slot<this.isUsed.length; slot++){
+            if(this.isUsed[slot])
+                buffer.putLong(this.launchMinutes[slot]).putDouble(this.instances[slot]);
+        }
+        buffer.putInt(this.monthSize);
+        for(int index=0; index<this.monthSize; index++)
+            buffer.putLong(this.months[index]).putDouble(this.monthInstances[index]).putDouble(this.monthInstanceMinutes[index]);
+        buffer.putDouble(this.totalInstances);
+    }
+
+    /**
+     * Replace the launches and the running totals with those of a snapshot
+     * @param buffer
+     */
+    public void readState(ByteBuffer buffer){
+        this.clear();
+        for(int entry=0, entries=buffer.getInt(); entry<entries; entry++){
+            long launchMinute = buffer.getLong();
+            int slot = this.find(launchMinute);
+            this.isUsed[slot] = true;
+            this.launchMinutes[slot] = launchMinute;
+            this.instances[slot] = buffer.getDouble();
+            this.size++;
+            if(this.size * 2 > this.isUsed.length)
+                this.grow();
+        }
+        this.monthSize = buffer.getInt();
+        if(this.monthSize > this.months.length){
+            this.months = new long[this.monthSize];
+            this.monthInstances = new double[this.monthSize];
+            this.monthInstanceMinutes = new double[this.monthSize];
+        }
+        for(int index=0; index<this.monthSize; index++){
+            this.months[index] = buffer.getLong();
+            this.monthInstances[index] = buffer.getDouble();
+            this.monthInstanceMinutes[index] = buffer.getDouble();
+        }
+        this.totalInstances = buffer.getDouble();
+        this.uptimeMinute = NONE;
+    }
+
+    /** ******************************
+     * ***** HELPER METHODS **********
+     * *******************************
+     */
+
+    /**
+     * @param launchMinute
+     * @param count
+     */
+    private void addToMonth(long launchMinute, double count){
+        long month = EpochMinutes.monthIndex(launchMinute);
+        int index = 0;
+        while(index < this.monthSize && this.months[index] != month)
+            index++;
+        if(index == this.monthSize){
+            if(index == this.months.length){
+                this.months = Arrays.copyOf(this.months, index * 2);
+                this.monthInstances = Arrays.copyOf(this.monthInstances, index * 2);
+                this.monthInstanceMinutes = Arrays.copyOf(this.monthInstanceMinutes, index * 2);
+            }
+            this.months[index] = month;
+            this.monthInstances[index] = 0;
+            this.monthInstanceMinutes[index] = 0;
+            this.monthSize++;
+        }
+        this.monthInstances[index] += count;
+        this.monthInstanceMinutes[index] += count * launchMinute;
+        this.totalInstances += count;
+        this.uptimeMinute = NONE;
+    }
+
+    /**
+     * @param launchMinute
+     * @return int : slot of the launch minute, or the empty slot where it would be stored
+     */
+    private int find(long launchMinute){
+        int mask = this.isUsed.length - 1;
+        int slot = Long.hashCode(launchMinute * 0x9E3779B97F4A7C15L) & mask;
+        while(this.isUsed[slot] && this.launchMinutes[slot] != launchMinute)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void grow(){
+        long[] launchMinutes = this.launchMinutes;
+        double[] instances = this.instances;
+        boolean[] isUsed = this.isUsed;
+        this.launchMinutes = new long[isUsed.length * 2];
+        this.instances = new double[isUsed.length * 2];
+        this.isUsed = new boolean[isUsed.length * 2];
+        for(int slot=0; slot<isUsed.length; slot++){
+            if(!isUsed[slot])
+                continue;
+            int newSlot = this.find(launchMinutes[slot]);
+            this.isUsed[newSlot] = true;
+            this.launchMinutes[newSlot] = launchMinutes[slot];
+            this.instances[newSlot] = instances[slot];
+        }
+    }
+}
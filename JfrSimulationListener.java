@@ -0,0 +1,98 @@
+package track;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Emit the telemetry of a color simulation as Java Flight Recorder events
+ * Events are only committed while a recording enables them, e.g. -XX:StartFlightRecording
+ */
+public class JfrSimulationListener implements SimulationListener {
+    private static final EventType STEP = EventType.getEventType(StepEvent.class);
+
+    /**
+     * @return boolean : true while a recording enables the step events
+     */
+    @Override
+    public boolean isEnabled(){
+        return STEP.isEnabled();
+    }
+
+    @Override
+    public void onBuild(int points, long roads, long nanos){
+        BuildEvent event = new BuildEvent();
+        if(!event.isEnabled())
+            return;
+        event.points = points;
+        event.roads = roads;
+        event.buildTime = nanos;
+        event.commit();
+    }
+
+    @Override
+    public void onStep(long time, long nanos, int recomputedPoints, int changedPoints, int activeColors){
+        StepEvent event = new StepEvent();
+        if(!event.isEnabled())
+            return;
+        event.time = time;
+        event.stepTime = nanos;
+        event.recomputedPoints = recomputedPoints;
+        event.changedPoints = changedPoints;
+        event.activeColors = activeColors;
+        event.commit();
+    }
+
+    @Override
+    public void onCycle(long time, long cycle){
+        CycleEvent event = new CycleEvent();
+        if(!event.isEnabled())
+            return;
+        event.time = time;
+        event.cycle = cycle;
+        event.commit();
+    }
+
+    @Name("track.SimulationBuild")
+    @Label("Simulation Build")
+    @Category("Color Simulation")
+    static class BuildEvent extends Event {
+        @Label("Points")
+        int points;
+        @Label("Roads")
+        long roads;
+        @Label("Build Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long buildTime;
+    }
+
+    @Name("track.SimulationStep")
+    @Label("Simulation Step")
+    @Category("Color Simulation")
+    static class StepEvent extends Event {
+        @Label("Time")
+        long time;
+        @Label("Step Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long stepTime;
+        @Label("Recomputed Points")
+        int recomputedPoints;
+        @Label("Changed Points")
+        int changedPoints;
+        @Label("Active Colors")
+        int activeColors;
+    }
+
+    @Name("track.SimulationCycle")
+    @Label("Simulation Cycle")
+    @Category("Color Simulation")
+    static class CycleEvent extends Event {
+        @Label("Time")
+        long time;
+        @Label("Cycle")
+        long cycle;
+    }
+}
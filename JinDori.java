@@ -1,33 +1,53 @@
 package track;
 
+import java.nio.IntBuffer;
 import java.util.Arrays;
-import java.util.Set;
-import java.util.HashSet;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
 
 public class JinDori {
-    private int n, m, k;
+    public static final int DEFAULT_MAX_POINTS = 1000;
+    public static final int DEFAULT_MAX_ROADS = 2000;
+
+    private int n, m, threads;
+    private long k;
     private int[] c;
-    private String roadAsString;
-    private List<Integer> newColorsAtTimeK;
+    private RoadGraph roads;
+    private int[] colorsAtTimeK;
+    // Colors at time (k) kept outside of the Java heap, null unless offHeap
+    private CompactColorDynamics offHeapColors;
+    // Receives the telemetry of the simulation, null if not measured
+    private SimulationListener listener;
 
     public JinDori(String[] lines){
+        this(lines, DEFAULT_MAX_POINTS, DEFAULT_MAX_ROADS);
+    }
+
+    /**
+     * @param lines lines of input.in
+     * @param maxPoints maximum Number of Points(n) accepted
+     * @param maxRoads maximum Number of Roads(m) accepted
+     */
+    public JinDori(String[] lines, int maxPoints, int maxRoads){
+        this(lines, maxPoints, maxRoads, 1);
+    }
+
+    /**
+     * @param lines lines of input.in
+     * @param maxPoints maximum Number of Points(n) accepted
+     * @param maxRoads maximum Number of Roads(m) accepted
+     * @param threads number of threads updating the colors of each time
+     */
+    public JinDori(String[] lines, int maxPoints, int maxRoads, int threads){
+        this.threads = threads;
         // First line of input.in (n, m, k)
         String[] lineZero = lines[0].split(" ");
         this.n = Integer.parseInt(lineZero[0]);
         this.m = Integer.parseInt(lineZero[1]);
-        this.k = Integer.parseInt(lineZero[2]);
+        this.k = Long.parseLong(lineZero[2]);
         // Second line of input.in (c[1] ...c[n])
         this.c = Arrays.stream(lines[1].split(" ")).mapToInt(Integer::parseInt).toArray();
 
-        if((this.n < 2 || this.n > 1000) || (this.c.length < 1 && this.c.length > this.n) || (this.m < 1 || this.m > 2000))
+        if((this.n < 2 || this.n > maxPoints) || (this.c.length < 1 && this.c.length > this.n) || (this.m < 1 || this.m > maxRoads))
             throw new ArrayIndexOutOfBoundsException("Number of Points(n), Number of Colors(c) or Number of Roads(m) is out of bounds.");
         
         /**
@@ -37,15 +57,94 @@ public class JinDori {
          * .
          * u[m] v[m]
          */
-        List<String> roadsList = new ArrayList<String>(Arrays.asList(lines)).subList(2, lines.length);
+        if((lines.length - 2 != this.m))
+            throw new ArrayIndexOutOfBoundsException("Number of Roads(m) is out of bounds.");
+
+        // Build the adjacent points of every point in one pass over the roads
+        this.roads = RoadGraph.parse(lines, 2, n);
+        this.colorsAtTimeK = this.getColorAtTimeK(roads, k, c);
+    }
+
+    /**
+     * Read input.in as a stream of tokens without materializing its lines
+     * @param in tokens of input.in
+     * @param maxPoints maximum Number of Points(n) accepted
+     * @param maxRoads maximum Number of Roads(m) accepted
+     * @param threads number of threads updating the colors of each time
+     */
+    public JinDori(FastReader in, int maxPoints, int maxRoads, int threads){
+        this(in, maxPoints, maxRoads, threads, false);
+    }
+
+    /**
+     * Read input.in as a stream of tokens without materializing its lines
+     * @param in tokens of input.in
+     * @param maxPoints maximum Number of Points(n) accepted
+     * @param maxRoads maximum Number of Roads(m) accepted
+     * @param threads number of threads updating the colors of each time
+     * @param offHeap true to keep the roads and colors outside of the Java heap (sequential only)
+     */
+    public JinDori(FastReader in, int maxPoints, int maxRoads, int threads, boolean offHeap){
+        this(in, maxPoints, maxRoads, threads, offHeap, null);
+    }
+
+    /**
+     * Read input.in as a stream of tokens without materializing its lines
+     * @param in tokens of input.in
+     * @param maxPoints maximum Number of Points(n) accepted
+     * @param maxRoads maximum Number of Roads(m) accepted
+     * @param threads number of threads updating the colors of each time
+     * @param offHeap true to keep the roads and colors outside of the Java heap (sequential only)
+     * @param listener receives the build time and the telemetry of each time, null if not measured
+     */
+    public JinDori(FastReader in, int maxPoints, int maxRoads, int threads, boolean offHeap, SimulationListener listener){
+        this.threads = threads;
+        this.listener = listener;
+        // n, m, k
+        this.n = in.nextInt();
+        this.m = in.nextInt();
+        this.k = in.nextLong();
+
+        if((this.n < 2 || this.n > maxPoints) || (this.m < 1 || this.m > maxRoads))
+            throw new ArrayIndexOutOfBoundsException("Number of Points(n), Number of Colors(c) or Number of Roads(m) is out of bounds.");
+
+        if(offHeap){
+            // The colors and roads are read straight into direct buffers, only the palette is on the Java heap
+            IntBuffer colors = CompactColorDynamics.readColors(in, this.n);
+            IntBuffer roads = OffHeapRoadGraph.readRoads(in, this.m);
+            if(in.hasNext())
+                throw new ArrayIndexOutOfBoundsException("Number of Roads(m) is out of bounds.");
+
+            long start = System.nanoTime();
+            OffHeapRoadGraph offHeapRoads = OffHeapRoadGraph.fromRoads(n, roads, m);
+            if(listener != null)
+                listener.onBuild(n, offHeapRoads.offset(n), System.nanoTime() - start);
+            this.offHeapColors = this.getColorAtTimeK(offHeapRoads, k, colors);
+            return;
+        }
 
-        if((roadsList.size() != this.m))
+        // c[1] ...c[n]
+        this.c = new int[this.n];
+        for(int point=0; point<this.n; point++)
+            this.c[point] = in.nextInt();
+
+        // u[1] v[1] ...u[m] v[m]
+        int[] u = new int[this.m];
+        int[] v = new int[this.m];
+        for(int road=0; road<this.m; road++){
+            if(!in.hasNext())
+                throw new ArrayIndexOutOfBoundsException("Number of Roads(m) is out of bounds.");
+            u[road] = in.nextInt();
+            v[road] = in.nextInt();
+        }
+        if(in.hasNext())
             throw new ArrayIndexOutOfBoundsException("Number of Roads(m) is out of bounds.");
 
-        // Format roads to a single String with ';' as delimiter 
-        // Formatted Road: u[1] v[1];u[2] v[2]; ...u[m] v[m]
-        this.roadAsString = String.join(";", roadsList);
-        this.newColorsAtTimeK = new ArrayList<>(this.getColorAtTimeK(roadAsString, n, k, c));
+        long start = System.nanoTime();
+        this.roads = RoadGraph.fromRoads(n, u, v, m);
+        if(listener != null)
+            listener.onBuild(n, this.roads.offsets()[n], System.nanoTime() - start);
+        this.colorsAtTimeK = this.getColorAtTimeK(roads, k, c);
     }
 
     /** 
@@ -53,85 +152,80 @@ public class JinDori {
      * @return String[]
      */
     public String[] outputLines(){
-        return newColorsAtTimeK.stream().map(String::valueOf).collect(Collectors.toList()).toArray(new String[newColorsAtTimeK.size()]);
+        String[] lines = new String[this.colorsAtTimeK != null ? this.colorsAtTimeK.length : this.offHeapColors.points()];
+        for(int point=0; point<lines.length; point++)
+            lines[point] = String.valueOf(this.colorAtTimeK(point));
+        return lines;
+    }
+    
+    /** 
+     * Return the road graph, built once and reusable for other times and initial colors
+     * @return RoadGraph : null if the roads are kept outside of the Java heap
+     */
+    public RoadGraph getRoads(){
+        return roads;
+    }
+
+    /** 
+     * Write the color of each point at time (k), one per line, without creating Strings
+     * @param out
+     */
+    public void writeTo(FastWriter out){
+        for(int point=0, size=this.colorsAtTimeK != null ? this.colorsAtTimeK.length : this.offHeapColors.points(); point<size; point++)
+            out.writeInt(this.colorAtTimeK(point)).newLine();
+    }
+
+    /** 
+     * @param point (0-based)
+     * @return int : color of the point at time (k)
+     */
+    private int colorAtTimeK(int point){
+        return this.offHeapColors != null ? this.offHeapColors.color(point) : this.colorsAtTimeK[point];
     }
     
     /** 
      * Get the color of each point at time (k)
-     * @param roadAsString Roads u[1] v[1];u[2] v[2]; ...u[m] v[m]
-     * @param n number of points
+     * @param roads adjacent points of each point
      * @param k max time
      * @param c initial color of each point
-     * @return List<Integer> : color of each point at max time (k)
+     * @return int[] : color of each point at max time (k)
      */
-    private List<Integer> getColorAtTimeK(String roadAsString, int n, int k, int[] c){
-        List<Set<Integer>> adjacentPointsPerPoint = new ArrayList<>();
-        
-        // Iterate each point and get its adjacent points from the roads
-        for(int point=1; point<=n; point++){
-            // Regex pattern to identify the roads from "roadAsString" where the current point is connected
-            Pattern pattern = Pattern.compile("((^|(?<=;))"+ point +" \\d*)|(\\d* "+ point +"((?=;)|$))");
-            Matcher matcher = pattern.matcher(roadAsString);
-
-            Set<Integer> adjacentPoints = new HashSet<Integer>();
-            final int currentPoint = point;
-            // Iterate each String matched by regex pattern
-            while (matcher.find()) {
-                // Split the String, parse to int and get the point that is not the current point of the loop
-                int adjacentPoint = Arrays.stream(matcher.group().split(" "))
-                    .mapToInt(Integer::parseInt)
-                    .filter(num -> num != currentPoint).findFirst().getAsInt();
-                // Add it as adjacent points
-                adjacentPoints.add(adjacentPoint);
-            }
-            // Add the collected adjacent points as adjacent points of the current point
-            adjacentPointsPerPoint.add(adjacentPoints);
+    private int[] getColorAtTimeK(RoadGraph roads, long k, int[] c){
+        // The original colors are returned as is at time 0
+        if(k <= 0)
+            return c;
+
+        // Colors are double buffered and counted without allocation on each time
+        if(this.threads <= 1){
+            ColorDynamics dynamics = new ColorDynamics(roads, c);
+            dynamics.setListener(this.listener);
+            dynamics.runUntil(k);
+            return dynamics.colors();
         }
-        
-        // Stores the new colors of each point
-        // Initialize by initial color of each point (int[] c)
-        List<Integer> newC = Arrays.stream(c).boxed().collect(Collectors.toList());
-        // Iterate until the max time k
-        for(int time=1; time <= k; time++){
-            List<Integer> colorsAtCurrentTime = new ArrayList<Integer>();
-            // Iterate over each point, proceed to getting new color
-            for(Set<Integer> adjacentPointsSet : adjacentPointsPerPoint){
-                // colorMap (key: color of adjacent point, value: number of frequency)
-                Map<Integer,Integer> colorMap =new HashMap<Integer, Integer>();
-
-                // Iterate each adjacent point of the current point
-                for(int adjacentPoint : adjacentPointsSet){
-                    int index = adjacentPoint - 1, frequency = 1;
-
-                    // Identify the color of adjacent point and store it to colorMap
-                    // If identified color is already stored, add its frequency by 1
-                    // Else store the new color and initialize its frequency by 1
-                    if(colorMap.keySet().contains(newC.get(index))){
-                        frequency = colorMap.get(newC.get(index));
-                        colorMap.put(newC.get(index), ++frequency);
-                    }else
-                        colorMap.put(newC.get(index), frequency);
-                } 
-
-                // Get the value of largest frequency of the colorMap
-                int maxFrequency=(Collections.max(colorMap.values()));
-
-                // Get all colors in "colorMap" with the largest frequency
-                // Sort all equally frequent colors to ascending order 
-                // Assign the first color as new color of the curren point
-                Integer newColor = colorMap.entrySet().stream()
-                    .filter(entry -> maxFrequency == entry.getValue())
-                    .map(Map.Entry::getKey).sorted()
-                    .mapToInt(Integer::intValue).findFirst().getAsInt();
-
-                // Store the new color of current point
-                colorsAtCurrentTime.add(newColor);
-            }
-            // Replace the stored colors to new color for current time
-            newC.clear();
-            newC.addAll(colorsAtCurrentTime);
+
+        // Points are split into degree balanced ranges updated by the pool
+        ForkJoinPool pool = new ForkJoinPool(this.threads);
+        try{
+            ColorDynamics dynamics = new ColorDynamics(roads, c, pool);
+            dynamics.setListener(this.listener);
+            dynamics.runUntil(k);
+            return dynamics.colors();
+        }finally{
+            pool.shutdown();
         }
+    }
 
-        return newC;
+    /** 
+     * Get the color of each point at time (k), the roads and colors being outside of the Java heap
+     * @param roads adjacent points of each point
+     * @param k max time
+     * @param c initial color of each point
+     * @return CompactColorDynamics : colors of the points at max time (k), the original colors if k <= 0
+     */
+    private CompactColorDynamics getColorAtTimeK(OffHeapRoadGraph roads, long k, IntBuffer c){
+        CompactColorDynamics dynamics = new CompactColorDynamics(roads, c);
+        dynamics.setListener(this.listener);
+        dynamics.runUntil(k);
+        return dynamics;
     }
 }
\ No newline at end of file
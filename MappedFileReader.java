@@ -0,0 +1,68 @@
+package track;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class MappedFileReader extends FastReader {
+    // A mapped region is at most 2GB, larger files are mapped region by region
+    public static final long DEFAULT_REGION_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long regionSize;
+    private long mappedUntil = 0;
+
+    /**
+     * @param path input file read through memory mapping
+     */
+    public MappedFileReader(Path path){
+        this(path, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * @param path input file read through memory mapping
+     * @param regionSize number of bytes mapped at a time
+     */
+    public MappedFileReader(Path path, long regionSize){
+        if(regionSize < 1 || regionSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Region size must be between 1 and " + Integer.MAX_VALUE);
+        try{
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.size = this.channel.size();
+            this.regionSize = regionSize;
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Map the next region of the file, the bytes are read in place from the page cache
+     * A token crossing two regions is continued from the next region by the tokenizer
+     * @return boolean : false if the file is finished
+     */
+    @Override
+    protected boolean refill(){
+        if(this.mappedUntil >= this.size)
+            return false;
+        try{
+            long length = Math.min(this.regionSize, this.size - this.mappedUntil);
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, this.mappedUntil, length);
+            this.mappedUntil += length;
+            return true;
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close(){
+        try{
+            this.channel.close();
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package track;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+public class OffHeapRoadGraph {
+    private final int points;
+    // Compressed sparse rows outside of the Java heap, same layout as RoadGraph
+    private final IntBuffer offsets;
+    private final IntBuffer neighbors;
+
+    private OffHeapRoadGraph(int points, IntBuffer offsets, IntBuffer neighbors){
+        this.points = points;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+    }
+
+    /**
+     * Build the compressed sparse rows of the roads outside of the Java heap
+     * Duplicated roads are stored once and roads from a point to itself are ignored
+     * @param n number of points
+     * @param u first point of each road (1-based)
+     * @param v second point of each road (1-based)
+     * @param m number of roads
+     * @return OffHeapRoadGraph
+     */
+    public static OffHeapRoadGraph fromRoads(int n, int[] u, int[] v, int m){
+        IntBuffer roads = allocate(m * 2L);
+        for(int road=0; road<m; road++)
+            roads.put(road * 2, u[road]).put(road * 2 + 1, v[road]);
+        return fromRoads(n, roads, m);
+    }
+
+    /**
+     * Read the roads u[1] v[1] ...u[m] v[m] outside of the Java heap, to build the graph from them
+     * @param in tokens of the roads
+     * @param m number of roads
+     * @return IntBuffer : points of road r (1-based) at 2r and 2r+1
+     */
+    public static IntBuffer readRoads(FastReader in, int m){
+        IntBuffer roads = allocate(m * 2L);
+        for(int road=0; road<m; road++){
+            if(!in.hasNext())
+                throw new ArrayIndexOutOfBoundsException("Number of Roads(m) is out of bounds.");
+            roads.put(road * 2, in.nextInt());
+            roads.put(road * 2 + 1, in.nextInt());
+        }
+        return roads;
+    }
+
+    /**
+     * Build the compressed sparse rows of the roads outside of the Java heap
+     * One pass counts the roads of each point, another places them, nothing is copied to the Java heap
+     * Duplicated roads are stored once and roads from a point to itself are ignored
+     * @param n number of points
+     * @param roads points of road r (1-based) at 2r and 2r+1
+     * @param m number of roads
+     * @return OffHeapRoadGraph
+     */
+    public static OffHeapRoadGraph fromRoads(int n, IntBuffer roads, int m){
+        // Count the roads connected to each point
+        IntBuffer offsets = allocate(n + 1L);
+        for(int road=0; road<m; road++){
+            int u = roads.get(road * 2), v = roads.get(road * 2 + 1);
+            if(u < 1 || u > n || v < 1 || v > n)
+                throw new ArrayIndexOutOfBoundsException("Point of road " + u + " " + v + " is out of bounds.");
+            if(u == v)
+                continue;
+            offsets.put(u, offsets.get(u) + 1);
+            offsets.put(v, offsets.get(v) + 1);
+        }
+        long total = 0;
+        for(int point=0; point<=n; point++){
+            total += offsets.get(point);
+            offsets.put(point, (int) Math.min(total, Integer.MAX_VALUE));
+        }
+
+        // Place each adjacent point to its row (0-based)
+        IntBuffer neighbors = allocate(total);
+        IntBuffer position = allocate(n);
+        for(int point=0; point<n; point++)
+            position.put(point, offsets.get(point));
+        for(int road=0; road<m; road++){
+            int u = roads.get(road * 2), v = roads.get(road * 2 + 1);
+            if(u == v)
+                continue;
+            int slot = position.get(u - 1);
+            neighbors.put(slot, v - 1);
+            position.put(u - 1, slot + 1);
+            slot = position.get(v - 1);
+            neighbors.put(slot, u - 1);
+            position.put(v - 1, slot + 1);
+        }
+
+        // Remove the duplicated adjacent points of each row
+        // seen[q] == p + 1 if q is already an adjacent point of p
+        IntBuffer seen = position;
+        for(int point=0; point<n; point++)
+            seen.put(point, 0);
+        int size = 0;
+        for(int point=0, start=0; point<n; point++){
+            int end = offsets.get(point + 1);
+            offsets.put(point, size);
+            for(int index=start; index<end; index++){
+                int adjacentPoint = neighbors.get(index);
+                if(seen.get(adjacentPoint) != point + 1){
+                    seen.put(adjacentPoint, point + 1);
+                    neighbors.put(size++, adjacentPoint);
+                }
+            }
+            start = end;
+        }
+        offsets.put(n, size);
+
+        return new OffHeapRoadGraph(n, offsets, neighbors);
+    }
+
+    /**
+     * Copy a road graph outside of the Java heap
+     * @param roads
+     * @return OffHeapRoadGraph
+     */
+    public static OffHeapRoadGraph of(RoadGraph roads){
+        IntBuffer offsets = allocate(roads.offsets().length);
+        offsets.put(roads.offsets()).clear();
+        IntBuffer neighbors = allocate(roads.neighbors().length);
+        neighbors.put(roads.neighbors()).clear();
+        return new OffHeapRoadGraph(roads.points(), offsets, neighbors);
+    }
+
+    /**
+     * @return number of points
+     */
+    public int points(){
+        return this.points;
+    }
+
+    /**
+     * Adjacent points of point p are neighbor(offset(p)) ... neighbor(offset(p+1)-1)
+     * @param point (0-based)
+     * @return int
+     */
+    public int offset(int point){
+        return this.offsets.get(point);
+    }
+
+    /**
+     * @param slot
+     * @return int : adjacent point (0-based)
+     */
+    public int neighbor(int slot){
+        return this.neighbors.get(slot);
+    }
+
+    /**
+     * @param length number of ints
+     * @return IntBuffer : zero filled direct buffer
+     */
+    private static IntBuffer allocate(long length){
+        if(length * Integer.BYTES > Integer.MAX_VALUE)
+            throw new ArrayIndexOutOfBoundsException("Number of Roads(m) is out of bounds.");
+        return ByteBuffer.allocateDirect((int) length * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+}
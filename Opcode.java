@@ -0,0 +1,17 @@
+package track;
+
+public enum Opcode {
+    UPLOAD, DOWNLOAD, DELETE, LAUNCH, STOP, CALC, UPGRADE, CHANGE;
+
+    private static final Opcode[] VALUES = values();
+
+    /**
+     * @param ordinal
+     * @return Opcode : opcode of the given ordinal
+     */
+    public static Opcode of(int ordinal){
+        if(ordinal < 0 || ordinal >= VALUES.length)
+            throw new IllegalArgumentException("Unknown opcode: " + ordinal);
+        return VALUES[ordinal];
+    }
+}
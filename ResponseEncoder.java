@@ -0,0 +1,176 @@
+package track;
+
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+
+public class ResponseEncoder {
+    // Amounts beyond MAX_PLAIN_INTEGER are formatted as DecimalFormat("###") does
+    private static final ThreadLocal<DecimalFormat> HALF_EVEN_FORMAT = ThreadLocal.withInitial(() -> new DecimalFormat("###"));
+    private static final ThreadLocal<DecimalFormat> DOWN_FORMAT = ThreadLocal.withInitial(() -> {
+        DecimalFormat format = new DecimalFormat("###");
+        format.setRoundingMode(RoundingMode.DOWN);
+        return format;
+    });
+    // Amounts below this magnitude are rounded and written digit by digit, their integers are exact doubles
+    private static final double MAX_PLAIN_INTEGER = 1e15;
+    // "UPLOAD: ", "DOWNLOAD: ", ... in the order of the opcodes
+    private static final byte[][] LABELS;
+    static {
+        Opcode[] opcodes = Opcode.values();
+        LABELS = new byte[opcodes.length][];
+        for(Opcode opcode : opcodes)
+            LABELS[opcode.ordinal()] = (opcode.name() + ": ").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private byte[] bytes = new byte[128];
+    private int size = 0;
+    // Digits of the last number written, filled from the end
+    private final byte[] digits = new byte[20];
+
+    /**
+     * Forget the encoded response and reuse the buffer
+     * @return ResponseEncoder
+     */
+    public ResponseEncoder clear(){
+        this.size = 0;
+        return this;
+    }
+
+    /**
+     * @param opcode
+     * @return ResponseEncoder : "OPCODE: " appended
+     */
+    public ResponseEncoder label(Opcode opcode){
+        byte[] label = LABELS[opcode.ordinal()];
+        this.ensureCapacity(label.length);
+        System.arraycopy(label, 0, this.bytes, this.size, label.length);
+        this.size += label.length;
+        return this;
+    }
+
+    /**
+     * @param text ASCII text
+     * @return ResponseEncoder
+     */
+    public ResponseEncoder text(String text){
+        this.ensureCapacity(text.length());
+        for(int index=0, length=text.length(); index<length; index++)
+            this.bytes[this.size++] = (byte) text.charAt(index);
+        return this;
+    }
+
+    /**
+     * @param character ASCII character
+     * @return ResponseEncoder
+     */
+    public ResponseEncoder character(char character){
+        this.ensureCapacity(1);
+        this.bytes[this.size++] = (byte) character;
+        return this;
+    }
+
+    /**
+     * @return ResponseEncoder
+     */
+    public ResponseEncoder space(){
+        return this.character(' ');
+    }
+
+    /**
+     * Write the amount without fraction digits as DecimalFormat("###") does
+     * @param value
+     * @param isRoundingDown true for RoundingMode.DOWN, false for RoundingMode.HALF_EVEN
+     * @return ResponseEncoder
+     */
+    public ResponseEncoder amount(double value, boolean isRoundingDown){
+        // NaN, infinities and amounts beyond the exact integers of a double are left to DecimalFormat
+        if(!(Math.abs(value) < MAX_PLAIN_INTEGER))
+            return this.text((isRoundingDown ? DOWN_FORMAT : HALF_EVEN_FORMAT).get().format(value));
+
+        // Both round the exact value of the double: the cast as RoundingMode.DOWN, Math.rint as RoundingMode.HALF_EVEN
+        long number = (long) (isRoundingDown ? value : Math.rint(value));
+        // DecimalFormat keeps the sign of a negative amount rounded to 0, negative zero included
+        if(value < 0 || Double.doubleToRawLongBits(value) == Long.MIN_VALUE)
+            this.character('-');
+        return this.digits(Math.abs(number), 1);
+    }
+
+    /**
+     * Write the date and time as LocalDateTime.toString does for a time without seconds,
+     * with the given separator between the date and the time
+     * @param epochMinute minutes since 1970-01-01 00:00
+     * @param separator 'T' for "yyyy-MM-ddTHH:mm", ' ' for "yyyy-MM-dd HH:mm"
+     * @return ResponseEncoder
+     */
+    public ResponseEncoder dateTime(long epochMinute, char separator){
+        long monthIndex = EpochMinutes.monthIndex(epochMinute);
+        long year = Math.floorDiv(monthIndex, 12);
+        if(year < 0 || year > 9999){
+            // Signed or wider years, as formatted by LocalDateTime
+            String text = EpochMinutes.toLocalDateTime(epochMinute).toString();
+            return this.text(separator == 'T' ? text : text.replace('T', separator));
+        }
+
+        long offset = epochMinute - EpochMinutes.monthStart(monthIndex);
+        this.digits(year, 4).character('-');
+        this.digits(Math.floorMod(monthIndex, 12) + 1, 2).character('-');
+        this.digits(offset / (24 * 60) + 1, 2).character(separator);
+        this.digits(offset % (24 * 60) / 60, 2).character(':');
+        return this.digits(offset % 60, 2);
+    }
+
+    /**
+     * @return int : number of encoded bytes
+     */
+    public int size(){
+        return this.size;
+    }
+
+    /**
+     * @param out
+     */
+    public void writeTo(FastWriter out){
+        out.writeBytes(this.bytes, 0, this.size);
+    }
+
+    @Override
+    public String toString(){
+        return new String(this.bytes, 0, this.size, StandardCharsets.ISO_8859_1);
+    }
+
+    /** ******************************
+     * ***** HELPER METHODS **********
+     * *******************************
+     */
+
+    /**
+     * @param value non-negative
+     * @param minimumDigits number of digits, padded with leading zeros
+     * @return ResponseEncoder
+     */
+    private ResponseEncoder digits(long value, int minimumDigits){
+        int position = this.digits.length;
+        do{
+            this.digits[--position] = (byte) ('0' + value % 10);
+            value /= 10;
+        }while(value > 0);
+        while(this.digits.length - position < minimumDigits)
+            this.digits[--position] = '0';
+
+        int length = this.digits.length - position;
+        this.ensureCapacity(length);
+        System.arraycopy(this.digits, position, this.bytes, this.size, length);
+        this.size += length;
+        return this;
+    }
+
+    /**
+     * @param length number of bytes about to be appended
+     */
+    private void ensureCapacity(int length){
+        if(this.size + length > this.bytes.length)
+            this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.size + length));
+    }
+}
@@ -0,0 +1,173 @@
+package track;
+
+import java.util.Arrays;
+
+public class RoadGraph {
+    private final int points;
+    private final int[] offsets;
+    private final int[] neighbors;
+
+    private RoadGraph(int points, int[] offsets, int[] neighbors){
+        this.points = points;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+    }
+
+    /**
+     * Build the road graph from the road lines of input.in in a single pass
+     * Road lines: u[1] v[1], u[2] v[2], ...u[m] v[m]
+     * @param lines lines of input.in
+     * @param from index of the first road line
+     * @param n number of points
+     * @return RoadGraph
+     */
+    public static RoadGraph parse(String[] lines, int from, int n){
+        int m = lines.length - from;
+        int[] u = new int[m];
+        int[] v = new int[m];
+
+        for(int road=0; road<m; road++){
+            String line = lines[from + road];
+            // Read both points of the road without splitting the line
+            int index = skipSpaces(line, 0);
+            int end = skipDigits(line, index);
+            u[road] = parsePoint(line, index, end);
+            index = skipSpaces(line, end);
+            v[road] = parsePoint(line, index, skipDigits(line, index));
+        }
+
+        return fromRoads(n, u, v, m);
+    }
+
+    /**
+     * Build the compressed sparse rows of the roads
+     * Duplicated roads are stored once and roads from a point to itself are ignored
+     * @param n number of points
+     * @param u first point of each road (1-based)
+     * @param v second point of each road (1-based)
+     * @param m number of roads
+     * @return RoadGraph
+     */
+    public static RoadGraph fromRoads(int n, int[] u, int[] v, int m){
+        // Count the roads connected to each point
+        int[] offsets = new int[n + 1];
+        for(int road=0; road<m; road++){
+            if(u[road] < 1 || u[road] > n || v[road] < 1 || v[road] > n)
+                throw new ArrayIndexOutOfBoundsException("Point of road " + u[road] + " " + v[road] + " is out of bounds.");
+            if(u[road] == v[road])
+                continue;
+            offsets[u[road]]++;
+            offsets[v[road]]++;
+        }
+        for(int point=0; point<n; point++)
+            offsets[point + 1] += offsets[point];
+
+        // Place each adjacent point to its row (0-based)
+        int[] neighbors = new int[offsets[n]];
+        int[] position = new int[n];
+        System.arraycopy(offsets, 0, position, 0, n);
+        for(int road=0; road<m; road++){
+            if(u[road] == v[road])
+                continue;
+            neighbors[position[u[road] - 1]++] = v[road] - 1;
+            neighbors[position[v[road] - 1]++] = u[road] - 1;
+        }
+
+        // Remove the duplicated adjacent points of each row
+        // seen[q] == p + 1 if q is already an adjacent point of p
+        int[] seen = new int[n];
+        int size = 0;
+        for(int point=0, start=0; point<n; point++){
+            int end = offsets[point + 1];
+            offsets[point] = size;
+            for(int index=start; index<end; index++){
+                int adjacentPoint = neighbors[index];
+                if(seen[adjacentPoint] != point + 1){
+                    seen[adjacentPoint] = point + 1;
+                    neighbors[size++] = adjacentPoint;
+                }
+            }
+            start = end;
+        }
+        offsets[n] = size;
+
+        return new RoadGraph(n, offsets, size == neighbors.length ? neighbors : Arrays.copyOf(neighbors, size));
+    }
+
+    /**
+     * @return number of points
+     */
+    public int points(){
+        return this.points;
+    }
+
+    /**
+     * Adjacent points of point p are neighbors()[offsets()[p] ... offsets()[p+1]-1]
+     * @return int[]
+     */
+    public int[] offsets(){
+        return this.offsets;
+    }
+
+    /**
+     * @return int[] : adjacent points (0-based) of every point
+     */
+    public int[] neighbors(){
+        return this.neighbors;
+    }
+
+    /**
+     * @param point (0-based)
+     * @return number of adjacent points
+     */
+    public int degree(int point){
+        return this.offsets[point + 1] - this.offsets[point];
+    }
+
+    /**
+     * Get the colors at many times from one initial color of each point
+     * The graph is built once and reused by every query
+     * @param c initial color of each point
+     * @param times ascending times
+     * @return int[][] : color of each point at each time
+     */
+    public int[][] colorsAt(int[] c, long[] times){
+        return new ColorDynamics(this, c).colorsAt(times);
+    }
+
+    /**
+     * Get the colors at many times from many initial colors at once, sharing one pass over the roads per time
+     * @param seedings initial color of each point, for each seeding
+     * @param times ascending times
+     * @return int[][][] : color of each point of each seeding at each time
+     */
+    public int[][][] colorsAt(int[][] seedings, long[] times){
+        return new ColorDynamicsBatch(this, seedings).colorsAt(times);
+    }
+
+    /** ******************************
+     * ***** HELPER METHODS **********
+     * *******************************
+     */
+
+    private static int skipSpaces(String line, int index){
+        while(index < line.length() && line.charAt(index) == ' ')
+            index++;
+        return index;
+    }
+
+    private static int skipDigits(String line, int index){
+        while(index < line.length() && line.charAt(index) >= '0' && line.charAt(index) <= '9')
+            index++;
+        return index;
+    }
+
+    private static int parsePoint(String line, int start, int end){
+        if(start == end)
+            throw new NumberFormatException("For input string: \"" + line + "\"");
+        int point = 0;
+        for(int index=start; index<end; index++)
+            point = point * 10 + (line.charAt(index) - '0');
+        return point;
+    }
+}
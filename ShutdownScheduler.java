@@ -0,0 +1,225 @@
+package track;
+
+import java.util.Arrays;
+
+public class ShutdownScheduler {
+    // Projected shutdown minute of an account without running instances
+    public static final long NONE = Long.MIN_VALUE;
+
+    /**
+     * Receives the shutdowns fired by advanceTo, in the order of their minutes
+     */
+    public interface Listener {
+        /**
+         * @param accountId
+         * @param shutdownMinute minutes since 1970-01-01 00:00 the servers of the account went down
+         */
+        void onShutdown(long accountId, long shutdownMinute);
+    }
+
+    // Open addressing table from account id to its handle (handle + 1, 0 if the slot is free)
+    private long[] tableIds = new long[64];
+    private int[] tableHandles = new int[64];
+
+    // Account id, last projected shutdown minute and heap position (-1 if not queued) of each handle
+    private long[] accountIds = new long[32];
+    private long[] minutes = new long[32];
+    private int[] positions = new int[32];
+    private int handles = 0;
+
+    // Binary min-heap of handles ordered by shutdown minute, then by handle
+    private int[] heap = new int[32];
+    private int size = 0;
+
+    /**
+     * Schedule the shutdown of the account, moving it if it was already scheduled
+     * Nothing changes if the projection is the same as the last one, even if it already fired,
+     * so an account in overrun is not fired again until its projection moves
+     * @param accountId
+     * @param shutdownMinute minutes since 1970-01-01 00:00, NONE to cancel the shutdown
+     */
+    public void schedule(long accountId, long shutdownMinute){
+        int handle = this.handle(accountId);
+        if(this.minutes[handle] == shutdownMinute)
+            return;
+        this.minutes[handle] = shutdownMinute;
+
+        int position = this.positions[handle];
+        if(shutdownMinute == NONE){
+            if(position >= 0)
+                this.removeAt(position);
+        }else if(position < 0){
+            this.positions[handle] = this.size;
+            this.heap[this.size++] = handle;
+            this.siftUp(this.size - 1);
+        }else{
+            this.siftUp(position);
+            this.siftDown(this.positions[handle]);
+        }
+    }
+
+    /**
+     * Cancel the shutdown of the account
+     * @param accountId
+     */
+    public void remove(long accountId){
+        this.schedule(accountId, NONE);
+    }
+
+    /**
+     * Fire every shutdown at or before the given minute, earliest first
+     * @param minute minutes since 1970-01-01 00:00
+     * @param listener
+     * @return int : number of fired shutdowns
+     */
+    public int advanceTo(long minute, Listener listener){
+        int fired = 0;
+        while(this.size > 0 && this.minutes[this.heap[0]] <= minute){
+            int handle = this.heap[0];
+            this.removeAt(0);
+            listener.onShutdown(this.accountIds[handle], this.minutes[handle]);
+            fired++;
+        }
+        return fired;
+    }
+
+    /**
+     * @return long : earliest scheduled shutdown minute, NONE if nothing is scheduled
+     */
+    public long nextShutdownMinute(){
+        return this.size == 0 ? NONE : this.minutes[this.heap[0]];
+    }
+
+    /**
+     * @param accountId
+     * @return long : scheduled shutdown minute of the account, NONE if not scheduled
+     */
+    public long shutdownMinute(long accountId){
+        int slot = this.find(accountId);
+        if(this.tableHandles[slot] == 0)
+            return NONE;
+        int handle = this.tableHandles[slot] - 1;
+        return this.positions[handle] < 0 ? NONE : this.minutes[handle];
+    }
+
+    /**
+     * @return int : number of scheduled shutdowns
+     */
+    public int size(){
+        return this.size;
+    }
+
+    /** ******************************
+     * ***** HELPER METHODS **********
+     * *******************************
+     */
+
+    /**
+     * @param accountId
+     * @return int : handle of the account, a new account is not scheduled
+     */
+    private int handle(long accountId){
+        int slot = this.find(accountId);
+        if(this.tableHandles[slot] != 0)
+            return this.tableHandles[slot] - 1;
+
+        if(this.handles == this.accountIds.length){
+            int length = this.handles * 2;
+            this.accountIds = Arrays.copyOf(this.accountIds, length);
+            this.minutes = Arrays.copyOf(this.minutes, length);
+            this.positions = Arrays.copyOf(this.positions, length);
+            this.heap = Arrays.copyOf(this.heap, length);
+        }
+        int handle = this.handles++;
+        this.accountIds[handle] = accountId;
+        this.minutes[handle] = NONE;
+        this.positions[handle] = -1;
+        this.tableIds[slot] = accountId;
+        this.tableHandles[slot] = handle + 1;
+
+        if(this.handles * 2 > this.tableHandles.length)
+            this.grow();
+        return handle;
+    }
+
+    /**
+     * Remove the handle at the given heap position
+     * @param position
+     */
+    private void removeAt(int position){
+        this.positions[this.heap[position]] = -1;
+        int last = this.heap[--this.size];
+        if(position == this.size)
+            return;
+        this.heap[position] = last;
+        this.positions[last] = position;
+        this.siftUp(position);
+        this.siftDown(this.positions[last]);
+    }
+
+    private void siftUp(int position){
+        int handle = this.heap[position];
+        while(position > 0){
+            int parent = (position - 1) >>> 1;
+            if(!this.isBefore(handle, this.heap[parent]))
+                break;
+            this.heap[position] = this.heap[parent];
+            this.positions[this.heap[position]] = position;
+            position = parent;
+        }
+        this.heap[position] = handle;
+        this.positions[handle] = position;
+    }
+
+    private void siftDown(int position){
+        int handle = this.heap[position];
+        while(true){
+            int child = position * 2 + 1;
+            if(child >= this.size)
+                break;
+            if(child + 1 < this.size && this.isBefore(this.heap[child + 1], this.heap[child]))
+                child++;
+            if(!this.isBefore(this.heap[child], handle))
+                break;
+            this.heap[position] = this.heap[child];
+            this.positions[this.heap[position]] = position;
+            position = child;
+        }
+        this.heap[position] = handle;
+        this.positions[handle] = position;
+    }
+
+    /**
+     * Ties are broken by handle, so accounts shut down at the same minute fire in the order of their first schedule
+     * @return boolean : true if handle a fires before handle b
+     */
+    private boolean isBefore(int a, int b){
+        return this.minutes[a] < this.minutes[b] || (this.minutes[a] == this.minutes[b] && a < b);
+    }
+
+    /**
+     * @param accountId
+     * @return int : slot of the account, or the free slot where it would be stored
+     */
+    private int find(long accountId){
+        int mask = this.tableHandles.length - 1;
+        int slot = Long.hashCode(accountId * 0x9E3779B97F4A7C15L) & mask;
+        while(this.tableHandles[slot] != 0 && this.tableIds[slot] != accountId)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void grow(){
+        long[] tableIds = this.tableIds;
+        int[] tableHandles = this.tableHandles;
+        this.tableIds = new long[tableHandles.length * 2];
+        this.tableHandles = new int[tableHandles.length * 2];
+        for(int slot=0; slot<tableHandles.length; slot++){
+            if(tableHandles[slot] == 0)
+                continue;
+            int newSlot = this.find(tableIds[slot]);
+            this.tableIds[newSlot] = tableIds[slot];
+            this.tableHandles[newSlot] = tableHandles[slot];
+        }
+    }
+}
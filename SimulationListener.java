@@ -0,0 +1,44 @@
+package track;
+
+/**
+ * Receives the telemetry of a color simulation
+ * Every method is called on the simulating thread, the simulation waits for it
+ * Without a listener, or while it is not enabled, the simulation does not measure anything
+ */
+public interface SimulationListener {
+    /**
+     * Asked before each time, the counts of onStep are only computed if true
+     * @return boolean
+     */
+    default boolean isEnabled(){
+        return true;
+    }
+
+    /**
+     * The road graph was built
+     * @param points number of points
+     * @param roads number of adjacent points of every point, each road counted from both points
+     * @param nanos time spent building the graph
+     */
+    default void onBuild(int points, long roads, long nanos){
+    }
+
+    /**
+     * The simulation proceeded one time
+     * @param time time reached
+     * @param nanos time spent counting the adjacent colors and choosing the new colors
+     * @param recomputedPoints points whose adjacent colors were counted, every point unless only the frontier is
+     * @param changedPoints points whose color changed
+     * @param activeColors distinct colors of the points
+     */
+    default void onStep(long time, long nanos, int recomputedPoints, int changedPoints, int activeColors){
+    }
+
+    /**
+     * The colors repeat every (cycle) times from the given time, the remaining times are skipped
+     * @param time
+     * @param cycle 1 if the colors do not change anymore
+     */
+    default void onCycle(long time, long cycle){
+    }
+}
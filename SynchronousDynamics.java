@@ -0,0 +1,177 @@
+package track;
+
+public abstract class SynchronousDynamics<T> {
+    protected long time = 0;
+    // Receives the telemetry of each time, null if not measured
+    private SimulationListener listener = null;
+
+    /**
+     * Proceed to the next time and increment the time
+     */
+    protected abstract void advance();
+
+    /**
+     * @return T : copy of the state at the current time
+     */
+    protected abstract T snapshot();
+
+    /**
+     * Remember the state at the current time
+     */
+    protected abstract void takeCheckpoint();
+
+    /**
+     * @return boolean : true if the state at the current time is the same as the checkpoint
+     */
+    protected abstract boolean isAtCheckpoint();
+
+    /**
+     * @return boolean : true if the state is known not to change anymore
+     */
+    protected boolean isFixedPoint(){
+        return false;
+    }
+
+    /**
+     * Points whose color changed on the last time, only asked while an enabled listener is attached
+     * @return int
+     */
+    protected int changedPoints(){
+        return -1;
+    }
+
+    /**
+     * Points recomputed on the last time, only asked while an enabled listener is attached
+     * @return int
+     */
+    protected int recomputedPoints(){
+        return -1;
+    }
+
+    /**
+     * Distinct colors at the current time, only asked while an enabled listener is attached
+     * @return int
+     */
+    protected int activeColors(){
+        return -1;
+    }
+
+    /**
+     * Report the telemetry of each time to the listener, null to stop reporting
+     * @param listener
+     */
+    public void setListener(SimulationListener listener){
+        this.listener = listener;
+    }
+
+    /**
+     * @return long : current time
+     */
+    public long time(){
+        return this.time;
+    }
+
+    /**
+     * Proceed until time (k)
+     * @param k
+     */
+    public void runUntil(long k){
+        if(this.time < k)
+            this.run(new long[]{k}, null);
+    }
+
+    /**
+     * The state is a deterministic function of the previous state, so it repeats after some time.
+     * The current state is compared with a checkpoint taken at power of two distances (Brent),
+     * once it repeats, only one cycle is simulated to reach the remaining times.
+     * @param times ascending times, none before the current time
+     * @param snapshots state at each time, not taken if null, times with the same state share the same snapshot
+     */
+    protected void run(long[] times, T[] snapshots){
+        for(int query=0; query<times.length; query++){
+            if(times[query] < (query == 0 ? this.time : times[query - 1]))
+                throw new IllegalArgumentException("Times must be in ascending order and not before time " + this.time);
+        }
+
+        this.takeCheckpoint();
+        long checkpointTime = this.time;
+        long power = 1;
+        int query = 0;
+
+        while(true){
+            while(query < times.length && times[query] == this.time){
+                if(snapshots != null)
+                    snapshots[query] = this.snapshot();
+                query++;
+            }
+            if(query == times.length)
+                return;
+
+            this.proceed();
+
+            // The state does not change (cycle of 1), or it is the same as the checkpoint
+            long cycle = this.isFixedPoint() ? 1 : this.isAtCheckpoint() ? this.time - checkpointTime : 0;
+            if(cycle > 0){
+                if(this.listener != null)
+                    this.listener.onCycle(this.time, cycle);
+                this.skipCycles(times, query, snapshots, cycle);
+                return;
+            }
+
+            if(this.time - checkpointTime == power){
+                this.takeCheckpoint();
+                checkpointTime = this.time;
+                power <<= 1;
+            }
+        }
+    }
+
+    /**
+     * Proceed to the next time, measured only if an enabled listener is attached
+     */
+    private void proceed(){
+        SimulationListener listener = this.listener;
+        if(listener == null || !listener.isEnabled()){
+            this.advance();
+            return;
+        }
+
+        long start = System.nanoTime();
+        this.advance();
+        long nanos = System.nanoTime() - start;
+        listener.onStep(this.time, nanos, this.recomputedPoints(), this.changedPoints(), this.activeColors());
+    }
+
+    /**
+     * The state repeats every cycle from the current time, reach the remaining times within one cycle
+     * @param times ascending times
+     * @param query first remaining time
+     * @param snapshots state at each time, not taken if null
+     * @param cycle
+     */
+    private void skipCycles(long[] times, int query, T[] snapshots, long cycle){
+        long start = this.time;
+        long lastOffset = (times[times.length - 1] - start) % cycle;
+        long maxOffset = lastOffset;
+        for(int index=query; index<times.length && snapshots != null; index++)
+            maxOffset = Math.max(maxOffset, (times[index] - start) % cycle);
+
+        // Take the snapshots of every offset in the cycle, then stop at the offset of the last time
+        long endOffset = lastOffset < maxOffset ? cycle + lastOffset : lastOffset;
+        for(long offset=0; offset<=endOffset; offset++){
+            if(offset > 0)
+                this.proceed();
+            if(snapshots == null || offset > maxOffset)
+                continue;
+            T snapshot = null;
+            for(int index=query; index<times.length; index++){
+                if((times[index] - start) % cycle != offset)
+                    continue;
+                if(snapshot == null)
+                    snapshot = this.snapshot();
+                snapshots[index] = snapshot;
+            }
+        }
+        this.time = times[times.length - 1];
+    }
+}
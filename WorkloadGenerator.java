@@ -0,0 +1,394 @@
+package track;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ * Seeded generator of JinDori inputs and billing request streams, the same seed always gives the same workload
+ * Workloads are streamed to the writer, so only the state of the accounts is kept in memory
+ * java -cp . track.WorkloadGenerator --kind jindori|cloud|accounts --output PATH [--seed N]
+ *   jindori: [--topology uniform|power-law|lattice] [--points N] [--roads N] [--k N] [--colors N]
+ *   cloud, accounts: [--requests N] [--accounts N] [--binary]
+ */
+public class WorkloadGenerator {
+    private static final String USAGE = "Usage: java track.WorkloadGenerator --kind jindori|cloud|accounts --output PATH [--seed N]"
+        + " [--topology uniform|power-law|lattice] [--points N] [--roads N] [--k N] [--colors N] [--requests N] [--accounts N] [--binary]";
+
+    /**
+     * Shape of the generated roads
+     */
+    public enum Topology {
+        // Both points of every road are uniformly random
+        UNIFORM,
+        // Points are drawn with a heavy head, a few points have most of the roads
+        POWER_LAW,
+        // Every point is connected to the next points of a ring
+        LATTICE
+    }
+
+    private final SplittableRandom random;
+
+    /**
+     * @param seed
+     */
+    public WorkloadGenerator(long seed){
+        this.random = new SplittableRandom(seed);
+    }
+
+    public static void main(String[] args){
+        String kind = "jindori";
+        String output = null;
+        long seed = 1;
+        Topology topology = Topology.UNIFORM;
+        int points = JinDori.DEFAULT_MAX_POINTS;
+        int roads = JinDori.DEFAULT_MAX_ROADS;
+        long k = 1000000000L;
+        int colors = 16;
+        long requests = 1000000;
+        int accounts = 1;
+        boolean binary = false;
+        for(int i=0; i<args.length; i++){
+            if(args[i].equals("--binary"))
+                binary = true;
+            else if(args[i].equals("--kind"))
+                kind = value(args, ++i);
+            else if(args[i].equals("--output"))
+                output = value(args, ++i);
+            else if(args[i].equals("--seed"))
+                seed = Long.parseLong(value(args, ++i));
+            else if(args[i].equals("--topology"))
+                topology = Topology.valueOf(value(args, ++i).toUpperCase().replace('-', '_'));
+            else if(args[i].equals("--points"))
+                points = Integer.parseInt(value(args, ++i));
+            else if(args[i].equals("--roads"))
+                roads = Integer.parseInt(value(args, ++i));
+            else if(args[i].equals("--k"))
+                k = Long.parseLong(value(args, ++i));
+            else if(args[i].equals("--colors"))
+                colors = Integer.parseInt(value(args, ++i));
+            else if(args[i].equals("--requests"))
+                requests = Long.parseLong(value(args, ++i));
+            else if(args[i].equals("--accounts"))
+                accounts = Integer.parseInt(value(args, ++i));
+            else
+                usage("Unknown option: " + args[i]);
+        }
+        if(!kind.equals("jindori") && !kind.equals("cloud") && !kind.equals("accounts"))
+            usage("Unknown kind: " + kind);
+        if(binary && kind.equals("jindori"))
+            usage("--binary is only written for the cloud and accounts kinds");
+
+        WorkloadGenerator generator = new WorkloadGenerator(seed);
+        FastWriter out = output == null ? new FastWriter(System.out) : new FastWriter(openOutput(output));
+        if(kind.equals("jindori"))
+            generator.writeJinDori(out, topology, points, roads, k, colors);
+        else if(binary)
+            generator.writeBinaryBilling(out, requests, accounts);
+        else
+            generator.writeBilling(out, requests, accounts, kind.equals("accounts"));
+        if(output == null)
+            out.flush();
+        else
+            out.close();
+    }
+
+    /**
+     * Write an input of JinDori: n m k, the colors, then one road per line
+     * @param out
+     * @param topology
+     * @param n number of points
+     * @param m number of roads
+     * @param k time
+     * @param palette number of distinct colors
+     */
+    public void writeJinDori(FastWriter out, Topology topology, int n, int m, long k, int palette){
+        if(n < 2 || m < 1 || palette < 1)
+            throw new IllegalArgumentException("Invalid number of points, roads or colors: " + n + " " + m + " " + palette);
+
+        out.writeInt(n).writeByte(' ').writeInt(m).writeByte(' ').writeLong(k).newLine();
+        for(int point=0; point<n; point++){
+            if(point > 0)
+                out.writeByte(' ');
+            out.writeInt(this.nextColor(palette));
+        }
+        out.newLine();
+        for(int road=0; road<m; road++){
+            long pair = this.nextRoad(topology, n, road);
+            out.writeInt((int) (pair >>> 32)).writeByte(' ').writeInt((int) pair).newLine();
+        }
+    }
+
+    /**
+     * Generate the roads in memory, the same roads as writeJinDori for the same seed after the colors
+     * @param topology
+     * @param n number of points
+     * @param u filled with the first point of each road (1-based)
+     * @param v filled with the second point of each road (1-based)
+     * @param m number of roads
+     */
+    public void roads(Topology topology, int n, int[] u, int[] v, int m){
+        for(int road=0; road<m; road++){
+            long pair = this.nextRoad(topology, n, road);
+            u[road] = (int) (pair >>> 32);
+            v[road] = (int) pair;
+        }
+    }
+
+    /**
+     * @param n number of points
+     * @param palette number of distinct colors
+     * @return int[] : initial color of each point, 1 ... palette
+     */
+    public int[] colors(int n, int palette){
+        int[] c = new int[n];
+        for(int point=0; point<n; point++)
+            c[point] = this.nextColor(palette);
+        return c;
+    }
+
+    /**
+     * Write a request stream of the accounts, one request per line
+     * @param out
+     * @param requests number of requests, the CALC of a new month included
+     * @param accounts number of accounts with interleaved requests
+     * @param withAccountIds true to start every line with the id of its account, as CloudComputingAccounts reads
+     */
+    public void writeBilling(FastWriter out, long requests, int accounts, boolean withAccountIds){
+        BillingWorkload workload = this.billing(accounts);
+        BillingRequest request = new BillingRequest();
+        ResponseEncoder line = new ResponseEncoder();
+        for(long index=0; index<requests; index++){
+            int account = workload.next(request);
+            if(withAccountIds)
+                out.writeInt(account + 1).writeByte(' ');
+            request.format(line.clear()).writeTo(out);
+            out.newLine();
+        }
+    }
+
+    /**
+     * Write a request stream of the accounts in the binary request format, the accounts are not recorded
+     * @param out
+     * @param requests
+     * @param accounts
+     */
+    public void writeBinaryBilling(FastWriter out, long requests, int accounts){
+        BillingWorkload workload = this.billing(accounts);
+        BillingRequest request = new BillingRequest();
+        ByteBuffer buffer = ByteBuffer.allocate(BillingRequest.BYTES);
+        for(long index=0; index<requests; index++){
+            workload.next(request);
+            buffer.clear();
+            request.write(buffer);
+            out.writeBytes(buffer.array(), 0, BillingRequest.BYTES);
+        }
+    }
+
+    /**
+     * @param accounts
+     * @return BillingWorkload : request stream of the accounts starting at 2021-01-01 00:00
+     */
+    public BillingWorkload billing(int accounts){
+        if(accounts < 1)
+            throw new IllegalArgumentException("Invalid number of accounts: " + accounts);
+        return new BillingWorkload(accounts, EpochMinutes.parse("2021-01-01", "00:00"));
+    }
+
+    /**
+     * Requests of interleaved accounts, each account about 20 minutes apart
+     * so dates stay before year 9999 for up to 2e8 requests per account
+     * Every account gets a CALC before its first request of a new month and at no other time, uploads sometimes
+     * exceed the limits of the plan and large launches run into the usage fee limit and shut down
+     * Every request is billed by a service of its account, so downloads and deletes see the files actually stored
+     */
+    public final class BillingWorkload {
+        // Number of launches remembered per account for STOP
+        private static final int LAUNCHES = 8;
+
+        private long minute;
+        private final long[] months;
+        // Service of each account billing its requests as the engines do, only its storage space is read
+        private final CloudComputingService[] services;
+        private final ResponseEncoder response = new ResponseEncoder();
+        private final long[] launchMinutes;
+        private final double[] launchInstances;
+        private final int[] launchCounts;
+        private final int[] pendingCalcs;
+
+        private BillingWorkload(int accounts, long minute){
+            this.minute = minute;
+            this.months = new long[accounts];
+            this.services = new CloudComputingService[accounts];
+            this.launchMinutes = new long[accounts * LAUNCHES];
+            this.launchInstances = new double[accounts * LAUNCHES];
+            this.launchCounts = new int[accounts];
+            this.pendingCalcs = new int[accounts];
+            for(int account=0; account<accounts; account++){
+                this.months[account] = -1;
+                this.services[account] = new CloudComputingService(CloudComputingServicePlan.newPlan());
+            }
+        }
+
+        /**
+         * @param request filled with the next request
+         * @return int : account of the request (0-based)
+         */
+        public int next(BillingRequest request){
+            SplittableRandom random = WorkloadGenerator.this.random;
+            int accounts = this.months.length;
+            int account = random.nextInt(accounts);
+            // About 20 minutes between the requests of an account, whatever the number of accounts
+            if(random.nextInt(accounts) == 0)
+                this.minute += 1 + random.nextInt(40);
+
+            // A dated request of a new month comes after the CALC of the previous month
+            long month = EpochMinutes.monthIndex(this.minute);
+            if(this.months[account] >= 0 && month > this.months[account]){
+                this.months[account]++;
+                return this.set(request, account, Opcode.CALC, 0, 0, '\0', 0);
+            }
+            if(this.months[account] < 0){
+                this.months[account] = month;
+                return this.set(request, account, Opcode.UPLOAD, this.minute, 0, '\0', this.nextSize(random));
+            }
+
+            // CALC only comes with a new month, it bills the whole month
+            int draw = random.nextInt(97);
+            double storageSpace = this.services[account].getStorageSpace();
+            if(draw < 30){
+                return this.set(request, account, Opcode.UPLOAD, this.minute, 0, '\0', this.nextSize(random));
+            }
+            if(draw < 55){
+                // Mostly files that exist
+                double size = random.nextInt(10) == 0 ? this.nextSize(random) : Math.floor(storageSpace * random.nextDouble());
+                return this.set(request, account, Opcode.DOWNLOAD, this.minute, 0, '\0', size);
+            }
+            if(draw < 63){
+                double size = Math.floor(storageSpace * random.nextDouble() * 1.1);
+                return this.set(request, account, Opcode.DELETE, this.minute, 0, '\0', size);
+            }
+            if(draw < 75){
+                double instances = random.nextInt(20) == 0 ? 100 + random.nextInt(900) : 1 + random.nextInt(8);
+                // A launch at the minute of the last launch replaces its instances
+                int last = account * LAUNCHES + (this.launchCounts[account] + LAUNCHES - 1) % LAUNCHES;
+                int slot = this.launchCounts[account] > 0 && this.launchMinutes[last] == this.minute
+                    ? last : account * LAUNCHES + this.launchCounts[account]++ % LAUNCHES;
+                this.launchMinutes[slot] = this.minute;
+                this.launchInstances[slot] = instances;
+                return this.set(request, account, Opcode.LAUNCH, this.minute, 0, '\0', instances);
+            }
+            if(draw < 85 && this.launchCounts[account] > 0){
+                // Sometimes every instance of the launch, so accounts are left with no running instances
+                int slot = account * LAUNCHES + random.nextInt(Math.min(LAUNCHES, this.launchCounts[account]));
+                if(this.launchInstances[slot] >= 1){
+                    double instances = 1 + random.nextInt((int) this.launchInstances[slot]);
+                    this.launchInstances[slot] -= instances;
+                    return this.set(request, account, Opcode.STOP, this.minute, this.launchMinutes[slot], '\0', instances);
+                }
+            }
+            if(draw < 89){
+                return this.set(request, account, Opcode.UPGRADE, this.minute, 0, '\0', 100 * (1 + random.nextInt(1000)));
+            }
+            char abbreviation = "tsu".charAt(random.nextInt(3));
+            double limit = abbreviation == CloudComputingServicePlan.USAGE_FEE_LMT_ABBRE
+                ? 50 * random.nextInt(2000)
+                : Math.floor(Math.pow(10, 6 + random.nextDouble() * 9));
+            return this.set(request, account, Opcode.CHANGE, this.minute, 0, abbreviation, limit);
+        }
+
+        /**
+         * @param random
+         * @return double : file size, sometimes beyond the transfer amount of the Free Tier
+         */
+        private double nextSize(SplittableRandom random){
+            return random.nextInt(50) == 0 ? Math.floor(Math.pow(10, 9 + random.nextDouble() * 2.5)) : 1 + random.nextInt(1 << 30);
+        }
+
+        private int set(BillingRequest request, int account, Opcode opcode, long sentMinute, long launchMinute, char abbreviation, double amount){
+            request.set(opcode, sentMinute, launchMinute, abbreviation, amount);
+            this.services[account].process(request, this.response.clear());
+            return account;
+        }
+    }
+
+    /** ******************************
+     * ***** HELPER METHODS **********
+     * *******************************
+     */
+
+    /**
+     * @param palette
+     * @return int : color 1 ... palette
+     */
+    private int nextColor(int palette){
+        return 1 + this.random.nextInt(palette);
+    }
+
+    /**
+     * @param topology
+     * @param n number of points
+     * @param road index of the road
+     * @return long : first point (1-based) in the high 32 bits, second point (1-based) in the low 32 bits
+     */
+    private long nextRoad(Topology topology, int n, int road){
+        int u, v;
+        switch(topology){
+            case LATTICE:
+                // Road i connects point i mod n to the point (1 + i / n) further on the ring
+                u = road % n;
+                v = (u + 1 + (road / n) % (n - 1)) % n;
+                break;
+            case POWER_LAW:
+                // The density of point p is proportional to p^(-2/3), the degrees follow a power law
+                u = (int) (n * Math.pow(this.random.nextDouble(), 3));
+                v = (int) (n * Math.pow(this.random.nextDouble(), 3));
+                if(u == v)
+                    v = (v + 1) % n;
+                break;
+            default:
+                u = this.random.nextInt(n);
+                v = this.random.nextInt(n - 1);
+                if(v >= u)
+                    v++;
+        }
+        return (long) (u + 1) << 32 | (v + 1);
+    }
+
+    /**
+     * @param args
+     * @param i index of the value of the option args[i-1]
+     * @return String : the value
+     */
+    private static String value(String[] args, int i){
+        if(i == args.length)
+            usage("Missing value of " + args[i - 1]);
+        return args[i];
+    }
+
+    /**
+     * Print the error and the usage, then exit
+     * @param message
+     */
+    private static void usage(String message){
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+
+    /**
+     * @param path
+     * @return FileChannel
+     */
+    private static FileChannel openOutput(String path){
+        try{
+            return FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package track;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Bill a mix of requests of a paid account with the given number of launches
+ * Requests are timed in batches, a single request is too short for the timer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BillingBenchmark {
+    private static final int REQUESTS = 100000;
+
+    @Param({"1", "100", "10000"})
+    public int launches;
+
+    @Param({"false", "true"})
+    public boolean isMeasured;
+
+    private BillingRequest[] setUp;
+    private BillingRequest[] mix;
+    private final ResponseEncoder response = new ResponseEncoder();
+    private CloudComputingService service;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        this.setUp = new BillingRequest[this.launches + 2];
+        this.mix = Benchmarks.generateRequests(this.launches, REQUESTS, new SplittableRandom(1), this.setUp);
+    }
+
+    // The mix is not repeatable on the same account, each invocation bills it on a new one
+    @Setup(Level.Invocation)
+    public void setUpInvocation(){
+        this.service = new CloudComputingService(CloudComputingServicePlan.newPlan());
+        this.service.setMetrics(this.isMeasured ? new BillingMetrics() : null);
+        for(BillingRequest request : this.setUp)
+            this.service.process(request, this.response.clear());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public void process(Blackhole blackhole){
+        for(BillingRequest request : this.mix){
+            this.service.process(request, this.response.clear());
+            blackhole.consume(this.response.size());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package track;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Proceed the colors of generated roads: one time per operation, or every time until k with the cycle detection
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ColorDynamicsBenchmark {
+    @Param({"sparse", "power-law"})
+    public String shape;
+
+    @Param({"1000", "100000"})
+    public int n;
+
+    @Param({"4", "1000"})
+    public int palette;
+
+    private RoadGraph graph;
+    private int[] c;
+    private ColorDynamics dynamics;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        WorkloadGenerator generator = new WorkloadGenerator(1);
+        int[][] roads = Benchmarks.generateRoads(this.shape, this.n, generator);
+        this.graph = RoadGraph.fromRoads(this.n, roads[0], roads[1], roads[0].length);
+        this.c = generator.colors(this.n, this.palette);
+    }
+
+    // The colors reach a cycle after a few times, each iteration starts again from the initial colors
+    @Setup(Level.Iteration)
+    public void setUpIteration(){
+        this.dynamics = new ColorDynamics(this.graph, this.c);
+    }
+
+    @Benchmark
+    public int[] step(){
+        this.dynamics.step();
+        return this.dynamics.colors();
+    }
+
+    @Benchmark
+    public int[] colorsAtTimeK(){
+        ColorDynamics dynamics = new ColorDynamics(this.graph, this.c);
+        dynamics.runUntil(1000000000L);
+        return dynamics.colors();
+    }
+}
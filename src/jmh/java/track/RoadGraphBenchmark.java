@@ -0,0 +1,44 @@
+package track;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Build the compressed sparse rows of generated roads, one operation per build
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RoadGraphBenchmark {
+    @Param({"sparse", "power-law"})
+    public String shape;
+
+    @Param({"1000", "100000"})
+    public int n;
+
+    private int[][] roads;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        this.roads = Benchmarks.generateRoads(this.shape, this.n, new WorkloadGenerator(1));
+    }
+
+    @Benchmark
+    public RoadGraph fromRoads(){
+        return RoadGraph.fromRoads(this.n, this.roads[0], this.roads[1], this.roads[0].length);
+    }
+}
@@ -0,0 +1,51 @@
+package track;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class CloudComputingPipelineTest {
+    /**
+     * Several shards and rings smaller than the bursts of an account write the same logs in the same order as one thread
+     */
+    @Test
+    void shardsMergeTheLogsInTheOrderOfTheRequests(){
+        ByteArrayOutputStream requests = new ByteArrayOutputStream();
+        FastWriter writer = new FastWriter(requests);
+        new WorkloadGenerator(7).writeBilling(writer, 50000, 37, true);
+        writer.flush();
+        byte[] input = requests.toByteArray();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        FastWriter out = new FastWriter(expected);
+        new CloudComputingAccounts().processAll(new FastReader(new ByteArrayInputStream(input)), out);
+        out.flush();
+
+        for(int shards : new int[] {1, 3, 4}){
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            out = new FastWriter(actual);
+            new CloudComputingPipeline(shards, 4).process(new FastReader(new ByteArrayInputStream(input)), out);
+            out.flush();
+            assertEquals(expected.toString(StandardCharsets.US_ASCII), actual.toString(StandardCharsets.US_ASCII), shards + " shards");
+        }
+    }
+
+    /**
+     * A request failing in a shard fails the whole pipeline with its cause, instead of hanging the merge
+     */
+    @Test
+    void failureOfAShardIsPropagated(){
+        String requests = "1 UPLOAD 2022-01-01 00:00 10\n2 CALC\n1 UPLOAD 2022-01-01 00:01 10\n";
+        FastReader in = new FastReader(new ByteArrayInputStream(requests.getBytes(StandardCharsets.US_ASCII)));
+        FastWriter out = new FastWriter(new ByteArrayOutputStream());
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> new CloudComputingPipeline(2, 4).process(in, out));
+        assertTrue(e.getCause() instanceof IllegalStateException, String.valueOf(e.getCause()));
+        assertEquals("CALC before any dated request", e.getCause().getMessage());
+    }
+}
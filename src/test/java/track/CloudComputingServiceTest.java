@@ -0,0 +1,213 @@
+package track;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class CloudComputingServiceTest {
+    /**
+     * The shutdown date is in year +228160939, its month index is beyond int
+     */
+    @Test
+    void shutdownBeyondIntMonthIndexStaysInLaterMonth(){
+        String[] requests = {
+            "UPGRADE 2022-01-01 00:00 200000000000000",
+            "CHANGE 2022-01-01 00:00 u 200000000000000",
+            "LAUNCH 2022-01-01 00:01 1",
+            "UPLOAD 2022-01-01 00:02 5",
+            "CALC"
+        };
+        String[] expected = {
+            "UPGRADE: -",
+            "CHANGE: -",
+            "LAUNCH: 1 - ",
+            "UPLOAD: 5 5 +228160939-04-06T12:02",
+            "CALC: 64300 +228160939-04-06 12:02 "
+        };
+
+        assertArrayEquals(expected, new CloudComputingService(requests).getOutput());
+        assertArrayEquals(expected, new CloudComputingService(reader(requests)).getOutput());
+    }
+
+    /**
+     * Requests of an unknown type are skipped with the rest of their line by the line and token readers alike
+     */
+    @Test
+    void unknownTypeIsSkippedByEveryReader(){
+        String[] requests = {
+            "UPLOAD 2022-01-01 00:00 10",
+            "REFUND 2022-01-01 00:01 3 x",
+            "NOOP",
+            "DOWNLOAD 2022-01-01 00:02 4",
+            "CALC"
+        };
+        String[] expected = {
+            "UPLOAD: 10 10 -",
+            "DOWNLOAD: 14 -",
+            "CALC: 0 - "
+        };
+
+        assertArrayEquals(expected, new CloudComputingService(requests).getOutput());
+        assertArrayEquals(expected, new CloudComputingService(reader(requests)).getOutput());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        FastWriter out = new FastWriter(bytes);
+        new CloudComputingService().processAll(reader(requests), out);
+        out.flush();
+        assertEquals(String.join("\n", expected) + "\n", bytes.toString(StandardCharsets.US_ASCII));
+
+        String[] accountRequests = new String[requests.length];
+        String[] accountExpected = new String[expected.length];
+        for(int request=0; request<requests.length; request++)
+            accountRequests[request] = "7 " + requests[request];
+        for(int log=0; log<expected.length; log++)
+            accountExpected[log] = "7 " + expected[log];
+        assertArrayEquals(accountExpected, new CloudComputingAccounts(accountRequests).getOutput());
+        assertArrayEquals(accountExpected, new CloudComputingAccounts(reader(accountRequests)).getOutput());
+    }
+
+    /**
+     * Stopping every running instance leaves no shutdown date, instead of dividing by zero instances
+     */
+    @Test
+    void stopOfEveryRunningInstanceLeavesNoShutdown(){
+        String[] requests = {
+            "LAUNCH 2022-01-01 00:00 2",
+            "STOP 2022-01-01 10:00 2022-01-01 00:00 2",
+            "UPLOAD 2022-01-01 11:00 10",
+            "LAUNCH 2022-01-01 12:00 1",
+            "CALC"
+        };
+        String[] expected = {
+            "LAUNCH: 2 2022-01-03 02:01 ",
+            "STOP: 0 - ",
+            "UPLOAD: 10 10 -",
+            "LAUNCH: 1 2022-01-05 16:01 ",
+            "CALC: 0 - "
+        };
+
+        assertArrayEquals(expected, new CloudComputingService(requests).getOutput());
+        assertArrayEquals(expected, new CloudComputingService(reader(requests)).getOutput());
+    }
+
+    /**
+     * An account stopping every running instance does not stop the billing of the other accounts
+     */
+    @Test
+    void stopOfEveryRunningInstanceKeepsOtherAccountsBilled(){
+        String[] requests = {
+            "1 LAUNCH 2022-01-01 00:00 2",
+            "2 LAUNCH 2022-01-01 00:00 3",
+            "1 STOP 2022-01-01 10:00 2022-01-01 00:00 2",
+            "2 UPLOAD 2022-01-01 10:00 10",
+            "1 CALC",
+            "2 CALC"
+        };
+        String[] expected = {
+            "1 LAUNCH: 2 2022-01-03 02:01 ",
+            "2 LAUNCH: 3 2022-01-02 09:21 ",
+            "1 STOP: 0 - ",
+            "2 UPLOAD: 10 10 2022-01-02T09:21",
+            "1 CALC: 0 - ",
+            "2 CALC: 0 - "
+        };
+
+        assertArrayEquals(expected, new CloudComputingAccounts(requests).getOutput());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        FastWriter out = new FastWriter(bytes);
+        new CloudComputingAccounts().processAll(reader(requests), out);
+        out.flush();
+        assertEquals(String.join("\n", expected) + "\n", bytes.toString(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Projected usage fee limits agree with a CHANGE u then a CALC on a copy of the state,
+     * rejected limits, services without running instances and shutdowns after the month included
+     */
+    @Test
+    void projectedUsageFeeLimitsAgreeWithChangeThenCalc(){
+        double[] limits = {Double.NaN, -1, 0, 99, 100, 150, 800, 1000, 2500, 5000, 10000, 30000, 50000, 100000, 1e6};
+        long[] shutdownMinutes = new long[limits.length];
+        double[] fees = new double[limits.length];
+        // Candidates seen on each branch: rejected, without running instances, shutdown this month, shutdown after the month
+        int[] branches = new int[4];
+
+        WorkloadGenerator.BillingWorkload workload = new WorkloadGenerator(20).billing(1);
+        CloudComputingService service = new CloudComputingService();
+        BillingRequest request = new BillingRequest();
+        ResponseEncoder response = new ResponseEncoder();
+        for(int index=0; index<20000; index++){
+            workload.next(request);
+            service.process(request, response.clear());
+            if(request.getOpcode() == Opcode.CALC || index % 7 != 0)
+                continue;
+
+            long sentMinute = request.getSentMinute();
+            ByteBuffer before = state(service);
+            service.projectUsageFeeLimits(sentMinute, limits, shutdownMinutes, fees, limits.length);
+            assertEquals(before, state(service), "the projection changed the state");
+            for(int candidate=0; candidate<limits.length; candidate++){
+                CloudComputingService copy = copy(service);
+                String change = copy.process(new BillingRequest().set(Opcode.CHANGE, sentMinute, 0, CloudComputingServicePlan.USAGE_FEE_LMT_ABBRE, limits[candidate]));
+                String message = "request " + index + " limit " + limits[candidate];
+                if(change.endsWith("invalid value") || change.endsWith("free plan ")){
+                    assertTrue(Double.isNaN(fees[candidate]), message);
+                    assertEquals(ShutdownScheduler.NONE, shutdownMinutes[candidate], message);
+                    branches[0]++;
+                    continue;
+                }
+
+                long shutdownMinute = copy.getProjectedShutdownMinute();
+                assertEquals(shutdownMinute, shutdownMinutes[candidate], message);
+                String calc = copy.process(new BillingRequest().set(Opcode.CALC, 0, 0, '\0', 0));
+                // The rounding of the CALC amount is the last byte of the state
+                ByteBuffer state = state(copy);
+                boolean isRoundingDown = state.get(state.limit() - 1) != 0;
+                String fee = new ResponseEncoder().amount(fees[candidate], isRoundingDown).toString();
+                assertEquals(fee, calc.substring("CALC: ".length(), calc.indexOf(' ', "CALC: ".length())), message);
+
+                branches[shutdownMinute == ShutdownScheduler.NONE ? 1
+                    : EpochMinutes.monthIndex(shutdownMinute) > EpochMinutes.monthIndex(sentMinute) ? 3 : 2]++;
+            }
+        }
+        for(int branch=0; branch<branches.length; branch++)
+            assertTrue(branches[branch] > 0, "branch " + branch + " of " + Arrays.toString(branches));
+    }
+
+    /**
+     * @param service
+     * @return CloudComputingService : service of the same state, through a snapshot
+     */
+    static CloudComputingService copy(CloudComputingService service){
+        CloudComputingService copy = new CloudComputingService();
+        copy.readState(state(service));
+        return copy;
+    }
+
+    /**
+     * @param service
+     * @return ByteBuffer : snapshot of the state of the service, ready to be read
+     */
+    static ByteBuffer state(CloudComputingService service){
+        ByteBuffer state = ByteBuffer.allocate(service.stateBytes());
+        service.writeState(state);
+        return state.flip();
+    }
+
+    /**
+     * @param lines
+     * @return FastReader : tokens of the lines
+     */
+    static FastReader reader(String... lines){
+        byte[] bytes = (String.join("\n", lines) + "\n").getBytes(StandardCharsets.US_ASCII);
+        return new FastReader(new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,53 @@
+package track;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class ColorDynamicsBatchTest {
+    /**
+     * The colors at many times of one or many seedings are the colors of runUntil at each time,
+     * times past 1e12 are only reached by skipping the cycles
+     */
+    @Test
+    void colorsAtManyTimesAndSeedingsAgreeWithRunUntil(){
+        SplittableRandom random = new SplittableRandom(9);
+        for(int graph=0; graph<3000; graph++){
+            int n = 2 + random.nextInt(24);
+            int m = random.nextInt(3 * n);
+            int[] u = new int[m], v = new int[m];
+            for(int road=0; road<m; road++){
+                u[road] = 1 + random.nextInt(n);
+                v[road] = 1 + random.nextInt(n);
+            }
+            RoadGraph roads = RoadGraph.fromRoads(n, u, v, m);
+
+            int[][] seedings = new int[1 + random.nextInt(4)][n];
+            int palette = 1 + random.nextInt(n);
+            for(int[] seeding : seedings){
+                for(int point=0; point<n; point++)
+                    seeding[point] = 1 + random.nextInt(palette) * 1000;
+            }
+
+            long[] times = new long[1 + random.nextInt(6)];
+            for(int query=0; query<times.length; query++)
+                times[query] = random.nextBoolean() ? random.nextInt(40) : 1000000000000L + random.nextLong(1000000000000000L);
+            Arrays.sort(times);
+
+            int[][][] batch = roads.colorsAt(seedings, times);
+            for(int seeding=0; seeding<seedings.length; seeding++){
+                int[][] single = roads.colorsAt(seedings[seeding], times);
+                for(int query=0; query<times.length; query++){
+                    ColorDynamics dynamics = new ColorDynamics(roads, seedings[seeding]);
+                    dynamics.runUntil(times[query]);
+                    int[] expected = dynamics.colors();
+                    String message = "graph " + graph + " seeding " + seeding + " time " + times[query];
+                    assertArrayEquals(expected, single[query], message);
+                    assertArrayEquals(expected, batch[query][seeding], message);
+                }
+            }
+        }
+    }
+}
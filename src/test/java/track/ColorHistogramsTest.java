@@ -0,0 +1,73 @@
+package track;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class ColorHistogramsTest {
+    /**
+     * A hub adjacent to every point (hash table) and points of a few roads (scan) follow random color changes
+     */
+    @Test
+    void mostFrequentFollowsMoves(){
+        for(int palette : new int[]{2, 5, 300}){
+            SplittableRandom random = new SplittableRandom(palette);
+            int n = 200;
+            int m = (n - 1) + n * 2;
+            int[] u = new int[m], v = new int[m];
+            for(int road=0; road<n - 1; road++){
+                u[road] = 1;
+                v[road] = road + 2;
+            }
+            for(int road=n-1; road<m; road++){
+                u[road] = 1 + random.nextInt(n);
+                v[road] = 1 + random.nextInt(n);
+            }
+            RoadGraph roads = RoadGraph.fromRoads(n, u, v, m);
+            int[] colors = new int[n];
+            for(int point=0; point<n; point++)
+                colors[point] = random.nextInt(palette);
+
+            ColorHistograms histograms = new ColorHistograms(roads, colors);
+            assertMostFrequent(roads, colors, histograms);
+            for(int change=0; change<5000; change++){
+                int point = random.nextInt(n);
+                int newColor = random.nextInt(palette);
+                if(newColor == colors[point])
+                    continue;
+                for(int adjacent=roads.offsets()[point]; adjacent<roads.offsets()[point + 1]; adjacent++)
+                    histograms.move(roads.neighbors()[adjacent], colors[point], newColor);
+                colors[point] = newColor;
+                if(change % 50 == 0)
+                    assertMostFrequent(roads, colors, histograms);
+                assertEquals(bruteForce(roads, colors, 0), histograms.mostFrequent(0));
+            }
+            assertMostFrequent(roads, colors, histograms);
+        }
+    }
+
+    private static void assertMostFrequent(RoadGraph roads, int[] colors, ColorHistograms histograms){
+        for(int point=0; point<roads.points(); point++)
+            assertEquals(bruteForce(roads, colors, point), histograms.mostFrequent(point), "point " + point);
+    }
+
+    /**
+     * @return int : most frequent color of the adjacent points, the smallest on ties, -1 without adjacent points
+     */
+    private static int bruteForce(RoadGraph roads, int[] colors, int point){
+        int[] frequencies = new int[1000];
+        int mostFrequentColor = -1, maxFrequency = 0;
+        for(int adjacent=roads.offsets()[point]; adjacent<roads.offsets()[point + 1]; adjacent++){
+            int color = colors[roads.neighbors()[adjacent]];
+            frequencies[color]++;
+        }
+        for(int color=0; color<frequencies.length; color++){
+            if(frequencies[color] > maxFrequency){
+                maxFrequency = frequencies[color];
+                mostFrequentColor = color;
+            }
+        }
+        return mostFrequentColor;
+    }
+}
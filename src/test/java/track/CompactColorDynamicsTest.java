@@ -0,0 +1,102 @@
+package track;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class CompactColorDynamicsTest {
+    /**
+     * The --off-heap colors are the colors of ColorDynamics, with colors stored in 1, 2 and 4 bytes
+     */
+    @Test
+    void offHeapColorsAgreeWithColorDynamics(){
+        SplittableRandom random = new SplittableRandom(10);
+        // Palettes of 1 byte, of 2 bytes beyond 256 colors and of 4 bytes beyond 65536 colors
+        int[][] shapes = {{60, 5}, {2000, 300}, {3000, 256}, {2000, 257}, {70000, 65536}, {70000, 65537}};
+        for(int[] shape : shapes){
+            int n = shape[0], palette = shape[1];
+            // Every color of the palette is used once, then the others are drawn from it
+            int[] c = new int[n];
+            for(int point=0; point<n; point++)
+                c[point] = point < palette ? point * 3 + 1 : random.nextInt(palette) * 3 + 1;
+            int m = n + random.nextInt(n);
+            int[] u = new int[m], v = new int[m];
+            for(int road=0; road<m; road++){
+                u[road] = 1 + random.nextInt(n);
+                // Duplicated roads and roads from a point to itself included
+                v[road] = random.nextInt(8) == 0 && road > 0 ? u[road - 1] : 1 + random.nextInt(n);
+            }
+
+            for(long k : new long[] {1, 7, 1000000000000L}){
+                ColorDynamics expected = new ColorDynamics(RoadGraph.fromRoads(n, u, v, m), c);
+                expected.runUntil(k);
+
+                CompactColorDynamics compact = new CompactColorDynamics(OffHeapRoadGraph.fromRoads(n, u, v, m), c);
+                compact.runUntil(k);
+                assertArrayEquals(expected.colors(), compact.colors(), n + " points, " + palette + " colors, time " + k);
+
+                StringBuilder input = new StringBuilder().append(n).append(' ').append(m).append(' ').append(k).append('\n');
+                for(int point=0; point<n; point++)
+                    input.append(c[point]).append(point + 1 < n ? ' ' : '\n');
+                for(int road=0; road<m; road++)
+                    input.append(u[road]).append(' ').append(v[road]).append('\n');
+                FastReader in = new FastReader(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.US_ASCII)));
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                FastWriter out = new FastWriter(bytes);
+                new JinDori(in, n, m, 1, true).writeTo(out);
+                out.flush();
+
+                StringBuilder lines = new StringBuilder();
+                for(int color : expected.colors())
+                    lines.append(color).append('\n');
+                assertEquals(lines.toString(), bytes.toString(StandardCharsets.US_ASCII), n + " points, " + palette + " colors, time " + k);
+            }
+        }
+    }
+
+    /**
+     * Colors are stored in the narrowest width fitting the palette, the largest color id of each width included
+     */
+    @Test
+    void colorStoreWidthFitsThePalette(){
+        int[][] widths = {{1, 1}, {256, 1}, {257, 2}, {65536, 2}, {65537, 4}, {1 << 20, 4}};
+        for(int[] width : widths){
+            for(boolean offHeap : new boolean[] {false, true}){
+                ColorStore store = ColorStore.allocate(3, width[0], offHeap);
+                assertEquals(width[1], store.width(), width[0] + " colors");
+                store.set(0, width[0] - 1);
+                store.set(2, width[0] / 2);
+                assertEquals(width[0] - 1, store.get(0));
+                assertEquals(0, store.get(1));
+                assertEquals(width[0] / 2, store.get(2));
+            }
+        }
+    }
+
+    /**
+     * Duplicated roads in both directions are stored once and roads from a point to itself are ignored
+     */
+    @Test
+    void offHeapRoadsAreDeduplicated(){
+        int[] u = {1, 2, 1, 3, 2, 4, 3};
+        int[] v = {2, 1, 2, 3, 3, 4, 2};
+        OffHeapRoadGraph roads = OffHeapRoadGraph.fromRoads(4, u, v, u.length);
+        RoadGraph expected = RoadGraph.fromRoads(4, u, v, u.length);
+
+        int[] offsets = new int[5];
+        for(int point=0; point<=4; point++)
+            offsets[point] = roads.offset(point);
+        int[] neighbors = new int[offsets[4]];
+        for(int slot=0; slot<neighbors.length; slot++)
+            neighbors[slot] = roads.neighbor(slot);
+        assertArrayEquals(new int[] {0, 1, 3, 4, 4}, offsets);
+        assertArrayEquals(new int[] {1, 0, 2, 1}, neighbors);
+        assertArrayEquals(expected.offsets(), offsets);
+        assertArrayEquals(expected.neighbors(), neighbors);
+    }
+}
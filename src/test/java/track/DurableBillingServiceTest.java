@@ -0,0 +1,80 @@
+package track;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DurableBillingServiceTest {
+    /**
+     * A request out of range of the journal is rejected without changing the state, so a restart does not diverge
+     */
+    @Test
+    void requestOutOfJournalRangeLeavesStateUnchanged(@TempDir Path directory){
+        long minute = EpochMinutes.parse("2022-01-01", "00:00");
+        BillingRequest upload = new BillingRequest().set(Opcode.UPLOAD, minute, 0, '\0', 10);
+        // Minutes of the year 9000 do not fit in the 32 bits of the journal
+        BillingRequest farUpload = new BillingRequest().set(Opcode.UPLOAD, EpochMinutes.parse("9000-01-01", "00:00"), 0, '\0', 20);
+        BillingRequest download = new BillingRequest().set(Opcode.DOWNLOAD, minute + 1, 0, '\0', 5);
+
+        String expected;
+        try(DurableBillingService service = new DurableBillingService(directory, 0, DurableBillingService.SyncPolicy.EVERY_REQUEST)){
+            service.process(upload);
+            assertThrows(IllegalArgumentException.class, () -> service.process(farUpload));
+            assertEquals(1, service.requests());
+            expected = service.process(download);
+        }
+        assertEquals("DOWNLOAD: 15 -", expected);
+
+        try(DurableBillingService restarted = new DurableBillingService(directory, 0, DurableBillingService.SyncPolicy.EVERY_REQUEST)){
+            assertEquals(2, restarted.requests());
+            assertEquals("DOWNLOAD: 20 -", restarted.process(download));
+        }
+    }
+
+    /**
+     * A STOP of every running instance is replayed to the same state
+     */
+    @Test
+    void stopOfEveryRunningInstanceIsReplayedToTheSameState(@TempDir Path directory){
+        long minute = EpochMinutes.parse("2022-01-01", "00:00");
+        BillingRequest launch = new BillingRequest().set(Opcode.LAUNCH, minute, 0, '\0', 2);
+        BillingRequest stop = new BillingRequest().set(Opcode.STOP, minute + 600, minute, '\0', 2);
+        BillingRequest relaunch = new BillingRequest().set(Opcode.LAUNCH, minute + 720, 0, '\0', 1);
+
+        try(DurableBillingService service = new DurableBillingService(directory, 0, DurableBillingService.SyncPolicy.EVERY_REQUEST)){
+            service.process(launch);
+            assertEquals("STOP: 0 - ", service.process(stop));
+        }
+        try(DurableBillingService restarted = new DurableBillingService(directory, 0, DurableBillingService.SyncPolicy.EVERY_REQUEST)){
+            assertEquals("LAUNCH: 1 2022-01-05 16:01 ", restarted.process(relaunch));
+        }
+    }
+
+    /**
+     * A request failing after it changed the state stays journaled, so a restart rebuilds the state it left
+     */
+    @Test
+    void requestFailingInTheServiceIsReplayedToTheSameState(@TempDir Path directory){
+        long minute = EpochMinutes.parse("2022-01-01", "00:00");
+        BillingRequest upgrade = new BillingRequest().set(Opcode.UPGRADE, minute, 0, '\0', 2e17);
+        BillingRequest change = new BillingRequest().set(Opcode.CHANGE, minute, 0, CloudComputingServicePlan.USAGE_FEE_LMT_ABBRE, 2e17);
+        // The instances are launched, then their shutdown date is beyond the dates of LocalDateTime
+        BillingRequest launch = new BillingRequest().set(Opcode.LAUNCH, minute + 1, 0, '\0', 1);
+        BillingRequest stop = new BillingRequest().set(Opcode.STOP, minute + 2, minute + 1, '\0', 1);
+
+        try(DurableBillingService service = new DurableBillingService(directory, 0, DurableBillingService.SyncPolicy.EVERY_REQUEST)){
+            service.process(upgrade);
+            service.process(change);
+            assertThrows(DateTimeException.class, () -> service.process(launch));
+            assertEquals(3, service.requests());
+        }
+        try(DurableBillingService restarted = new DurableBillingService(directory, 0, DurableBillingService.SyncPolicy.EVERY_REQUEST)){
+            assertEquals(3, restarted.requests());
+            assertEquals("STOP: 0 - ", restarted.process(stop));
+        }
+    }
+}
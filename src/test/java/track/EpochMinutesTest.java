@@ -0,0 +1,34 @@
+package track;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Test;
+
+class EpochMinutesTest {
+    @Test
+    void monthIndexCoversEveryYearOfLocalDateTime(){
+        LocalDateTime[] dateTimes = {
+            LocalDateTime.MIN,
+            LocalDateTime.of(1899, 12, 31, 23, 59),
+            LocalDateTime.of(2022, 2, 28, 12, 0),
+            LocalDateTime.of(2200, 1, 1, 0, 0),
+            LocalDateTime.of(228160939, 4, 6, 12, 2),
+            LocalDateTime.MAX
+        };
+        for(LocalDateTime dateTime : dateTimes){
+            long epochMinute = EpochMinutes.of(dateTime);
+            long monthIndex = EpochMinutes.monthIndex(epochMinute);
+            assertEquals(dateTime.getYear() * 12L + dateTime.getMonthValue() - 1, monthIndex, dateTime.toString());
+            assertEquals(EpochMinutes.of(dateTime.withDayOfMonth(1).toLocalDate().atStartOfDay()), EpochMinutes.monthStart(monthIndex), dateTime.toString());
+        }
+    }
+
+    @Test
+    void laterMonthHasGreaterIndex(){
+        long early = EpochMinutes.parse("2022-01-01", "00:02");
+        long late = EpochMinutes.of(LocalDateTime.of(228160939, 4, 6, 12, 2));
+        assertTrue(EpochMinutes.monthIndex(early) < EpochMinutes.monthIndex(late));
+    }
+}
@@ -0,0 +1,44 @@
+package track;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class ResponseEncoderTest {
+    /**
+     * Amounts are written as DecimalFormat("###") writes them, fractions, ties, negative amounts rounded to 0, huge amounts and NaN included
+     */
+    @Test
+    void amountsAreWrittenAsDecimalFormat(){
+        DecimalFormat halfEven = new DecimalFormat("###");
+        DecimalFormat down = new DecimalFormat("###");
+        down.setRoundingMode(RoundingMode.DOWN);
+
+        double[] values = {0, -0.0, 0.5, 1.5, 2.5, -0.5, -1.5, -0.3, 0.49999999999999994, 0.9999999999999999, 1e15 - 0.5, 1e15 - 0.125,
+            -1e15 + 0.5, 1e15, 1e15 + 1, 1.7976931348623157e308, Double.MIN_VALUE, -Double.MIN_VALUE,
+            Double.NaN, 4503599627370495.5, 6000.000000000001};
+        SplittableRandom random = new SplittableRandom(17);
+        ResponseEncoder response = new ResponseEncoder();
+        for(int index=0; index<values.length + 300000; index++){
+            double value;
+            if(index < values.length)
+                value = values[index];
+            else if(index % 3 == 0)
+                // Ties and quarters of every magnitude
+                value = (random.nextLong(1L << (1 + random.nextInt(50))) - (1L << 20)) / (double) (1 << random.nextInt(3));
+            else if(index % 3 == 1)
+                value = (random.nextDouble() - 0.1) * Math.pow(10, random.nextInt(18));
+            else
+                value = Double.longBitsToDouble(random.nextLong());
+            // Infinities are written with a character out of ASCII
+            if(Double.isInfinite(value))
+                continue;
+
+            assertEquals(halfEven.format(value), response.clear().amount(value, false).toString(), "HALF_EVEN " + value);
+            assertEquals(down.format(value), response.clear().amount(value, true).toString(), "DOWN " + value);
+        }
+    }
+}
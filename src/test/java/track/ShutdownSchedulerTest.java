@@ -0,0 +1,131 @@
+package track;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class ShutdownSchedulerTest {
+    /**
+     * A new projection moves the shutdown later or earlier
+     */
+    @Test
+    void rescheduleMovesTheShutdownUpAndDown(){
+        ShutdownScheduler scheduler = new ShutdownScheduler();
+        scheduler.schedule(1, 100);
+        scheduler.schedule(2, 200);
+        scheduler.schedule(1, 300);
+        assertEquals(200, scheduler.nextShutdownMinute());
+        scheduler.schedule(1, 50);
+        assertEquals(50, scheduler.nextShutdownMinute());
+        assertEquals(50, scheduler.shutdownMinute(1));
+
+        List<String> fired = new ArrayList<String>();
+        assertEquals(2, scheduler.advanceTo(250, (accountId, minute) -> fired.add(accountId + "@" + minute)));
+        assertEquals(List.of("1@50", "2@200"), fired);
+        assertEquals(ShutdownScheduler.NONE, scheduler.nextShutdownMinute());
+    }
+
+    /**
+     * NONE cancels the shutdown, and scheduling again after a cancel queues it again
+     */
+    @Test
+    void noneCancelsTheShutdown(){
+        ShutdownScheduler scheduler = new ShutdownScheduler();
+        scheduler.schedule(1, 100);
+        scheduler.schedule(2, 150);
+        scheduler.schedule(1, ShutdownScheduler.NONE);
+        assertEquals(1, scheduler.size());
+        assertEquals(ShutdownScheduler.NONE, scheduler.shutdownMinute(1));
+        scheduler.remove(2);
+        assertEquals(0, scheduler.size());
+        assertEquals(0, scheduler.advanceTo(1000, (accountId, minute) -> { throw new AssertionError("fired " + accountId); }));
+
+        scheduler.schedule(1, 100);
+        assertEquals(100, scheduler.nextShutdownMinute());
+    }
+
+    /**
+     * Accounts shut down at the same minute fire in the order of their first schedule, not of their last one
+     */
+    @Test
+    void tiesFireInTheOrderOfTheFirstSchedule(){
+        ShutdownScheduler scheduler = new ShutdownScheduler();
+        scheduler.schedule(30, 500);
+        scheduler.schedule(10, 400);
+        scheduler.schedule(20, 100);
+        scheduler.schedule(20, 101);
+        scheduler.schedule(10, 101);
+        scheduler.schedule(30, 101);
+
+        List<Long> fired = new ArrayList<Long>();
+        scheduler.advanceTo(101, (accountId, minute) -> fired.add(accountId));
+        assertEquals(List.of(30L, 10L, 20L), fired);
+    }
+
+    /**
+     * An account in overrun does not fire again until its projection moves
+     */
+    @Test
+    void unchangedProjectionDoesNotFireAgain(){
+        ShutdownScheduler scheduler = new ShutdownScheduler();
+        List<Long> fired = new ArrayList<Long>();
+        scheduler.schedule(1, 100);
+        assertEquals(1, scheduler.advanceTo(100, (accountId, minute) -> fired.add(minute)));
+
+        scheduler.schedule(1, 100);
+        assertEquals(0, scheduler.size());
+        assertEquals(0, scheduler.advanceTo(200, (accountId, minute) -> fired.add(minute)));
+
+        scheduler.schedule(1, 150);
+        assertEquals(1, scheduler.advanceTo(200, (accountId, minute) -> fired.add(minute)));
+        assertEquals(List.of(100L, 150L), fired);
+    }
+
+    /**
+     * Random schedules of many more accounts than the initial 32 handles and 64 table slots fire as a sorted model does
+     */
+    @Test
+    void growthPastTheInitialCapacityKeepsTheOrder(){
+        SplittableRandom random = new SplittableRandom(19);
+        for(int round=0; round<20; round++){
+            ShutdownScheduler scheduler = new ShutdownScheduler();
+            // Last projection and first schedule order of each account, as the scheduler should see them
+            Map<Long, Long> projections = new HashMap<Long, Long>();
+            Map<Long, Integer> orders = new HashMap<Long, Integer>();
+            Map<Long, Long> queued = new HashMap<Long, Long>();
+            int accounts = 40 + random.nextInt(2000);
+            for(int step=0; step<accounts * 4; step++){
+                // Sparse ids, negative ones included
+                long accountId = (random.nextInt(accounts) - accounts / 2) * 1000003L;
+                long minute = random.nextInt(10) == 0 ? ShutdownScheduler.NONE : random.nextInt(500);
+                scheduler.schedule(accountId, minute);
+
+                orders.putIfAbsent(accountId, orders.size());
+                if(projections.containsKey(accountId) && projections.get(accountId) == minute)
+                    continue;
+                projections.put(accountId, minute);
+                if(minute == ShutdownScheduler.NONE)
+                    queued.remove(accountId);
+                else
+                    queued.put(accountId, minute);
+            }
+            assertEquals(queued.size(), scheduler.size());
+
+            List<Long> expected = new ArrayList<Long>(queued.keySet());
+            expected.sort((a, b) -> queued.get(a).equals(queued.get(b)) ? Integer.compare(orders.get(a), orders.get(b)) : Long.compare(queued.get(a), queued.get(b)));
+            List<Long> fired = new ArrayList<Long>();
+            long limit = random.nextInt(500);
+            scheduler.advanceTo(limit, (accountId, minute) -> {
+                assertEquals(queued.get(accountId), minute);
+                fired.add(accountId);
+            });
+            scheduler.advanceTo(Long.MAX_VALUE, (accountId, minute) -> fired.add(accountId));
+            assertEquals(expected, fired);
+        }
+    }
+}